@@ -0,0 +1,90 @@
+package com.tasktracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load and save time of the indented and the compressed JSON snapshot.
+ * <p>
+ * The size of each file on disk is printed when a trial ends, next to the
+ * timings. Run with
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args=SnapshotFormatBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotFormatBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"indented", "compressed"})
+    private String format;
+
+    private Path directory;
+
+    private Path file;
+
+    private TaskData data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("task-bench");
+        file = directory.resolve("tasks.json");
+
+        data = new TaskData();
+        Status[] statuses = Status.values();
+        for (int i = 1; i <= size; i++) {
+            Task task = new Task(i, "Benchmark task number " + i);
+            task.setStatus(statuses[i % statuses.length]);
+            data.put(task);
+        }
+        openStore().saveAll(data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%s snapshot of %d tasks: %d bytes on disk%n", format, size, Files.size(file));
+        try (var files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public TaskData load() throws IOException {
+        return openStore().load();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        openStore().saveAll(data);
+    }
+
+    private TaskStore openStore() {
+        return new JsonTaskStore(file, format.equals("compressed"));
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.tasktracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation cost of the repository hot paths for growing store sizes.
+ * <p>
+ * Mutations and reads run against a repository using
+ * {@link ReloadPolicy#ON_CHANGE}, as the daemon and HTTP modes do, so they
+ * measure the change and its persistence without a reload. The load and save
+ * benchmarks measure the round-trip every plain CLI command pays.
+ * </p>
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec}; the GC profiler is on by
+ * default and reports the allocation rate per operation.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskRepositoryBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"json", "journal", "mapped"})
+    private String storage;
+
+    private Path directory;
+
+    private Path file;
+
+    private TaskStore store;
+
+    private TaskRepository repository;
+
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("task-bench");
+        file = directory.resolve(storage.equals("mapped") ? "tasks.bin" : "tasks.json");
+
+        TaskData data = new TaskData();
+        Status[] statuses = Status.values();
+        for (int i = 1; i <= size; i++) {
+            Task task = new Task(i, "Benchmark task number " + i);
+            task.setStatus(statuses[i % statuses.length]);
+            data.put(task);
+        }
+        openStore().saveAll(data);
+
+        store = openStore();
+        repository = new TaskRepository(store, ReloadPolicy.ON_CHANGE);
+        repository.countByStatus();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public int addTask() {
+        return repository.addTask("Added by the benchmark");
+    }
+
+    @Benchmark
+    public boolean updateTask() {
+        return repository.updateTask(nextId(), "Updated by the benchmark");
+    }
+
+    @Benchmark
+    public boolean markDone() {
+        return repository.markDone(nextId());
+    }
+
+    @Benchmark
+    public String getTasks() throws IOException {
+        return repository.getTasks();
+    }
+
+    @Benchmark
+    public String getTasksByStatus() throws IOException {
+        return repository.getTasksByStatus(Status.DONE);
+    }
+
+    @Benchmark
+    public TaskData load() throws IOException {
+        return openStore().load();
+    }
+
+    @Benchmark
+    public void loadAndSave(Blackhole blackhole) throws IOException {
+        TaskStore roundTrip = openStore();
+        TaskData data = roundTrip.load();
+        roundTrip.saveAll(data);
+        blackhole.consume(data);
+    }
+
+    private TaskStore openStore() {
+        return switch (storage) {
+            case "journal" -> new JournalTaskStore(file);
+            case "mapped" -> new MappedTaskStore(file);
+            default -> new JsonTaskStore(file);
+        };
+    }
+
+    /**
+     * @return the ID of an existing task, cycling through the seeded ones
+     */
+    private int nextId() {
+        nextId = nextId % size + 1;
+        return nextId;
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.tasktracker;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numbered stream of the changes made through a repository.
+ * <p>
+ * Every change gets the next sequence number and is kept in a ring buffer
+ * holding the most recent {@code capacity} events. A subscriber starts
+ * after a given sequence number, receives the retained events that follow
+ * it and then live events, so catching up costs the number of changes
+ * missed and not the size of the store. Subscribers pull events with
+ * {@link Flow.Subscription#request(long)}; the feed never buffers on their
+ * behalf, so a subscriber that falls more than {@code capacity} events
+ * behind, or asks to resume from a sequence that is no longer retained,
+ * is failed with an {@link IllegalStateException} and must reload the tasks
+ * before subscribing again from {@link #latestSequence()}.
+ * </p>
+ * <p>
+ * Sequence numbers are only meaningful within one feed: they restart with
+ * the process, and changes made by other processes are not published.
+ * Events are delivered on virtual threads, one subscriber at a time in
+ * sequence order.
+ * </p>
+ */
+public class ChangeFeed implements Flow.Publisher<TaskEvent> {
+
+    /**
+     * Number of events retained when no capacity is given.
+     */
+    public static final int DEFAULT_CAPACITY = 16_384;
+
+    private static final Executor DELIVERY = task -> Thread.ofVirtual().name("task-feed").start(task);
+
+    private final TaskEvent[] ring;
+
+    private long lastSequence;
+
+    private final Set<FeedSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a feed retaining {@value #DEFAULT_CAPACITY} events.
+     */
+    public ChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a feed retaining the given number of events.
+     *
+     * @param capacity number of most recent events a subscriber can resume from
+     */
+    public ChangeFeed(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        ring = new TaskEvent[capacity];
+    }
+
+    /**
+     * @return sequence number of the last published event, or 0 if there is none
+     */
+    public synchronized long latestSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Publishes a change to every subscriber.
+     *
+     * @param type kind of change
+     * @param task the task after the change, or as it was when deleted
+     * @return the published event
+     */
+    public TaskEvent publish(TaskEvent.Type type, Task task) {
+        TaskEvent event;
+        synchronized (this) {
+            event = new TaskEvent(lastSequence + 1, type, task.getId(), task);
+            ring[slot(event.sequence())] = event;
+            lastSequence = event.sequence();
+        }
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.drain();
+        }
+        return event;
+    }
+
+    /**
+     * Subscribes to the events published from now on.
+     *
+     * @param subscriber receiver of the events
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super TaskEvent> subscriber) {
+        after(latestSequence()).subscribe(subscriber);
+    }
+
+    /**
+     * Returns a publisher of the events following the given sequence number.
+     *
+     * @param afterSequence last event already seen; {@link #latestSequence()} for live events only
+     * @return publisher of the events, which may be subscribed to any number of times
+     */
+    public Flow.Publisher<TaskEvent> after(long afterSequence) {
+        return subscriber -> {
+            FeedSubscription subscription = new FeedSubscription(subscriber, afterSequence + 1);
+            subscriptions.add(subscription);
+            subscription.drain();
+        };
+    }
+
+    /**
+     * Reads the event with the given sequence number.
+     *
+     * @return the event, or {@code null} if it was not published yet
+     * @throws IllegalStateException if the event is no longer retained or the sequence was never issued
+     */
+    private synchronized TaskEvent read(long sequence) {
+        if (sequence > lastSequence + 1) {
+            throw new IllegalStateException("Unknown sequence " + (sequence - 1) + "; latest is " + lastSequence);
+        }
+        if (sequence > lastSequence) {
+            return null;
+        }
+        if (sequence <= lastSequence - ring.length) {
+            throw new IllegalStateException("Events after sequence " + (sequence - 1)
+                    + " are no longer retained; reload and resume from " + lastSequence);
+        }
+        return ring[slot(sequence)];
+    }
+
+    private int slot(long sequence) {
+        return (int) Math.floorMod(sequence, (long) ring.length);
+    }
+
+    /**
+     * Delivery state of one subscriber. Signals are serialized by a
+     * work-in-progress counter: whoever raises it from zero runs the
+     * delivery loop, and any signal arriving meanwhile makes the loop go
+     * round once more.
+     */
+    private final class FeedSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super TaskEvent> subscriber;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private long next;
+
+        private boolean started;
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable error;
+
+        FeedSubscription(Flow.Subscriber<? super TaskEvent> subscriber, long next) {
+            this.subscriber = subscriber;
+            this.next = next;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Non-positive request: " + n);
+                drain();
+                return;
+            }
+            requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void drain() {
+            if (pending.getAndIncrement() == 0) {
+                DELIVERY.execute(this::deliver);
+            }
+        }
+
+        private void deliver() {
+            int missed = 1;
+            do {
+                if (!started) {
+                    started = true;
+                    subscriber.onSubscribe(this);
+                }
+                while (!cancelled && error == null && requested.get() > 0) {
+                    TaskEvent event;
+                    try {
+                        event = read(next);
+                    } catch (IllegalStateException e) {
+                        error = e;
+                        break;
+                    }
+                    if (event == null) {
+                        break;
+                    }
+                    next++;
+                    requested.decrementAndGet();
+                    try {
+                        subscriber.onNext(event);
+                    } catch (RuntimeException e) {
+                        cancel();
+                    }
+                }
+                if (error != null && !cancelled) {
+                    cancel();
+                    subscriber.onError(error);
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+    }
+
+}
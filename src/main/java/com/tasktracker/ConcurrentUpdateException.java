@@ -0,0 +1,29 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Thrown by a {@link TaskStore} when its files were changed by another
+ * process after this one loaded them, so writing would silently drop
+ * the other process's changes.
+ * <p>
+ * {@link TaskRepository} reacts by reloading the store and retrying the
+ * operation.
+ * </p>
+ */
+public class ConcurrentUpdateException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception for the given store file.
+     *
+     * @param path   file that was changed concurrently
+     * @param detail what differs from the expected state
+     */
+    public ConcurrentUpdateException(Path path, String detail) {
+        super(path + " was modified by another process (" + detail + ")");
+    }
+
+}
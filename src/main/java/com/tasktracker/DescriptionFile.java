@@ -0,0 +1,261 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only file of task descriptions, read back by reference through an
+ * LRU cache.
+ * <p>
+ * A description is stored as its UTF-8 bytes and referred to by a
+ * {@code long} packing its offset (upper 40 bits) and length (lower 24
+ * bits), so a single file holds up to 1 TB and a description up to 16 MB.
+ * Reads are positional and may run from any number of threads; the most
+ * recently read descriptions are kept in a cache bounded by entry count.
+ * Appends are made by one writer at a time, which holds the store's
+ * {@link StoreLock}.
+ * </p>
+ * <p>
+ * The file is only created by the first append. The channel is closed once
+ * the file object is no longer reachable, so tasks still being read from a
+ * replaced state keep working.
+ * </p>
+ */
+final class DescriptionFile {
+
+    /**
+     * Number of descriptions cached when no size is given.
+     */
+    static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final int LENGTH_BITS = 24;
+
+    private static final long MAX_LENGTH = (1L << LENGTH_BITS) - 1;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Path path;
+
+    private final ChannelHolder holder = new ChannelHolder();
+
+    private final IoCounters io;
+
+    private final Map<Long, String> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private long end;
+
+    /**
+     * Opens the file if it exists. A missing file is created by the first append.
+     *
+     * @param path      file path
+     * @param cacheSize number of descriptions kept in memory
+     * @param io        counters receiving the bytes read and written
+     * @throws IOException if the file cannot be opened
+     */
+    DescriptionFile(Path path, int cacheSize, IoCounters io) throws IOException {
+        this.path = path;
+        this.io = io;
+        if (Files.exists(path)) {
+            end = holder.open(path, false).size();
+        }
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        CLEANER.register(this, holder);
+    }
+
+    /**
+     * @return path of the file
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Reads a description.
+     *
+     * @param ref reference returned by {@link #append}
+     * @return the description
+     * @throws UncheckedIOException if reading the file fails
+     */
+    String read(long ref) {
+        synchronized (cache) {
+            String cached = cache.get(ref);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        ByteBuffer bytes = ByteBuffer.allocate((int) (ref & MAX_LENGTH));
+        long position = ref >>> LENGTH_BITS;
+        try {
+            FileChannel channel = holder.open(path, false);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, position + bytes.position()) < 0) {
+                    throw new IOException("Description at " + position + " runs past the end of " + path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        io.read(bytes.capacity());
+        String description = new String(bytes.array(), StandardCharsets.UTF_8);
+        synchronized (cache) {
+            cache.put(ref, description);
+        }
+        return description;
+    }
+
+    /**
+     * Copies the bytes of a description to the end of another file without
+     * decoding them.
+     *
+     * @param ref    reference into this file
+     * @param target file to append to
+     * @return the reference of the copy in the target file
+     * @throws IOException if reading or writing fails
+     */
+    long copyTo(long ref, DescriptionFile target) throws IOException {
+        long length = ref & MAX_LENGTH;
+        long position = ref >>> LENGTH_BITS;
+        long offset = target.end;
+        FileChannel channel = holder.open(path, false);
+        FileChannel targetChannel = target.holder.open(target.path, true);
+        for (long copied = 0; copied < length; ) {
+            copied += channel.transferTo(position + copied, length - copied, targetChannel.position(offset + copied));
+        }
+        io.read(length);
+        target.io.written(length);
+        target.end += length;
+        return offset << LENGTH_BITS | length;
+    }
+
+    /**
+     * Appends a description at the end of the file as it currently is on disk.
+     *
+     * @param description text to append
+     * @return reference to pass to {@link #read}
+     * @throws IOException if writing fails or the description is longer than 16 MB
+     */
+    long append(String description) throws IOException {
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_LENGTH) {
+            throw new IOException("Description of " + bytes.length + " bytes is longer than " + MAX_LENGTH);
+        }
+        long offset = end;
+        FileChannel channel = holder.open(path, true);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+        end += bytes.length;
+        io.written(bytes.length);
+        return offset << LENGTH_BITS | bytes.length;
+    }
+
+    /**
+     * Picks up data appended by other processes, so the next append goes
+     * after it. Called by the writer once it holds the store lock.
+     *
+     * @throws IOException if the file size cannot be read
+     */
+    void refreshEnd() throws IOException {
+        end = Files.exists(path) ? holder.open(path, false).size() : 0;
+    }
+
+    /**
+     * Forces appended descriptions to disk.
+     *
+     * @throws IOException if flushing fails
+     */
+    void force() throws IOException {
+        FileChannel channel = holder.channel;
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * @return size of the file in bytes
+     */
+    long size() {
+        return end;
+    }
+
+    /**
+     * @param ref a description reference
+     * @return length of the description in bytes
+     */
+    static long length(long ref) {
+        return ref & MAX_LENGTH;
+    }
+
+    /**
+     * @return number of reads answered from the cache
+     */
+    long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of reads that went to the file
+     */
+    long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The channel of a description file, opened on first use and closed by
+     * the cleaner once the file object is unreachable.
+     */
+    private static final class ChannelHolder implements Runnable {
+
+        private volatile FileChannel channel;
+
+        /**
+         * @param create {@code true} to create the file if it does not exist
+         * @return the open channel
+         * @throws IOException if the file cannot be opened
+         */
+        synchronized FileChannel open(Path path, boolean create) throws IOException {
+            if (channel == null) {
+                channel = create
+                        ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                        : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        @Override
+        public synchronized void run() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException ignored) {
+                // Nothing is left to flush: appends are forced by the writer.
+            }
+        }
+
+    }
+
+}
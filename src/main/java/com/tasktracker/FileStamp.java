@@ -0,0 +1,40 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Snapshot of a file's modification time and size, used to detect
+ * changes made by other processes without reading the file.
+ *
+ * @param lastModified last modification time, or {@code null} if the file does not exist
+ * @param size         file size in bytes, or -1 if the file does not exist
+ */
+record FileStamp(FileTime lastModified, long size) {
+
+    /**
+     * Stamp describing a missing file.
+     */
+    static final FileStamp MISSING = new FileStamp(null, -1);
+
+    /**
+     * Reads the current stamp of a file.
+     *
+     * @param path file to inspect
+     * @return the file's stamp, or {@link #MISSING} if it does not exist
+     * @throws IOException if the attributes cannot be read
+     */
+    static FileStamp of(Path path) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileStamp(attributes.lastModifiedTime(), attributes.size());
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        }
+    }
+
+}
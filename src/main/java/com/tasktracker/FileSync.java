@@ -0,0 +1,51 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helpers forcing file contents and directory entries to stable storage.
+ */
+final class FileSync {
+
+    private FileSync() {
+    }
+
+    /**
+     * Flushes the contents of a file to the storage device.
+     *
+     * @param file file to flush
+     *
+     * @throws IOException if the file cannot be opened or flushed
+     */
+    static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Flushes the entries of the directory holding the given file, so that a
+     * file just created or renamed there survives a crash.
+     * <p>
+     * Some platforms, Windows among them, cannot open a directory; there the
+     * rename is left to the file system's own guarantees.
+     * </p>
+     *
+     * @param file file whose parent directory is flushed
+     */
+    static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directory cannot be synced on this platform.
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coalesces changes arriving within a short window into one store write.
+ * <p>
+ * The first writer to hand over a change opens a group and waits for the
+ * commit window to elapse; writers arriving in the meantime join the group.
+ * The first writer then persists the whole group with a single
+ * {@link TaskStore#saveChanges} call and every member returns once that call
+ * finished, so each change is still durable when its writer returns, but a
+ * burst of writes pays for one flush instead of one per change. A failure is
+ * reported to every member of the group.
+ * </p>
+ */
+final class GroupCommit {
+
+    private final TaskStore store;
+
+    private final Lock persistLock;
+
+    private final long windowNanos;
+
+    private Group open;
+
+    /**
+     * Creates a group commit in front of the given store.
+     *
+     * @param store       storage backend
+     * @param persistLock lock serializing calls to the store
+     * @param window      how long a group accepts changes before it is written
+     */
+    GroupCommit(TaskStore store, Lock persistLock, Duration window) {
+        this.store = store;
+        this.persistLock = persistLock;
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * Persists an added or modified task together with the rest of its group.
+     *
+     * @param task the changed task
+     * @param data every task currently held by the repository
+     *
+     * @throws IOException if the group could not be written
+     */
+    void save(Task task, TaskData data) throws IOException {
+        Group group;
+        boolean leader;
+        synchronized (this) {
+            leader = open == null;
+            if (leader) {
+                open = new Group();
+            }
+            group = open;
+            group.saved.put(task.getId(), task);
+        }
+        commit(group, leader, data);
+    }
+
+    /**
+     * Persists a deletion together with the rest of its group.
+     *
+     * @param id   ID of the deleted task
+     * @param data every task currently held by the repository
+     *
+     * @throws IOException if the group could not be written
+     */
+    void delete(int id, TaskData data) throws IOException {
+        Group group;
+        boolean leader;
+        synchronized (this) {
+            leader = open == null;
+            if (leader) {
+                open = new Group();
+            }
+            group = open;
+            group.saved.remove(id);
+            group.deleted.add(id);
+        }
+        commit(group, leader, data);
+    }
+
+    /**
+     * Writes the group if this caller opened it, then waits for the write.
+     */
+    private void commit(Group group, boolean leader, TaskData data) throws IOException {
+        if (leader) {
+            long deadline = System.nanoTime() + windowNanos;
+            for (long left = windowNanos; left > 0; left = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(left);
+            }
+            synchronized (this) {
+                open = null;
+            }
+
+            persistLock.lock();
+            try {
+                store.saveChanges(group.saved.values(), group.deleted, data);
+                group.done.complete(null);
+            } catch (IOException | RuntimeException e) {
+                group.done.completeExceptionally(e);
+            } finally {
+                persistLock.unlock();
+            }
+        }
+
+        try {
+            group.done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Changes collected during one commit window.
+     */
+    private static final class Group {
+
+        private final Map<Integer, Task> saved = new LinkedHashMap<>();
+
+        private final Set<Integer> deleted = new LinkedHashSet<>();
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.tasktracker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Monotonic task ID generator.
+ * <p>
+ * The next free ID is persisted with the tasks, so allocation is constant
+ * time and IDs of deleted tasks are never handed out again. Blocks of IDs
+ * can be reserved at once for bulk inserts.
+ * </p>
+ */
+public class IdSequence {
+
+    private final AtomicInteger next;
+
+    /**
+     * Creates a sequence starting at the given ID.
+     *
+     * @param next first ID to hand out
+     */
+    public IdSequence(int next) {
+        this.next = new AtomicInteger(Math.max(next, 1));
+    }
+
+    /**
+     * Allocates a single ID.
+     *
+     * @return the allocated ID
+     */
+    public int next() {
+        return next.getAndIncrement();
+    }
+
+    /**
+     * Allocates a contiguous block of IDs.
+     *
+     * @param count number of IDs to reserve
+     *
+     * @return the first ID of the block; the block ends at {@code first + count - 1}
+     */
+    public int reserve(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + count);
+        }
+        return next.getAndAdd(count);
+    }
+
+    /**
+     * @return the ID the next allocation will return
+     */
+    public int peek() {
+        return next.get();
+    }
+
+    /**
+     * Makes sure the given ID will never be allocated.
+     *
+     * @param id an ID already in use
+     */
+    public void advancePast(int id) {
+        next.accumulateAndGet(id + 1, Math::max);
+    }
+
+}
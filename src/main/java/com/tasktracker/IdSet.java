@@ -0,0 +1,164 @@
+package com.tasktracker;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Ordered set of task IDs kept as a bitset, one bit per possible ID.
+ * <p>
+ * The bits are split into pages of {@value #PAGE_SIZE} IDs, created when
+ * the first ID in their range is added and held in a map ordered by page
+ * number, so sparse IDs only cost the pages they touch. IDs handed out by
+ * an {@link IdSequence} are dense, so a set of ten million of them takes
+ * about 1.2 MB, against several hundred MB of boxed skip-list nodes.
+ * Pages are never dropped once created.
+ * </p>
+ * <p>
+ * Bits are set and cleared atomically, so IDs may be added and removed by
+ * several threads at once. Iteration is weakly consistent: it never fails
+ * and returns every ID present throughout, in ascending order.
+ * </p>
+ */
+final class IdSet {
+
+    private static final int PAGE_BITS = 12;
+
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private static final int WORDS = PAGE_SIZE / Long.SIZE;
+
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final ConcurrentSkipListMap<Integer, long[]> pages = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds an ID.
+     *
+     * @param id task ID
+     * @return {@code false} if it was already present
+     */
+    boolean add(int id) {
+        long[] page = pages.get(id >> PAGE_BITS);
+        if (page == null) {
+            page = pages.computeIfAbsent(id >> PAGE_BITS, number -> new long[WORDS]);
+        }
+        long bit = 1L << id;
+        return ((long) WORD.getAndBitwiseOr(page, word(id), bit) & bit) == 0;
+    }
+
+    /**
+     * Removes an ID.
+     *
+     * @param id task ID
+     * @return {@code false} if it was not present
+     */
+    boolean remove(int id) {
+        long[] page = pages.get(id >> PAGE_BITS);
+        if (page == null) {
+            return false;
+        }
+        long bit = 1L << id;
+        return ((long) WORD.getAndBitwiseAnd(page, word(id), ~bit) & bit) != 0;
+    }
+
+    /**
+     * @param id task ID
+     * @return {@code true} if the ID is present
+     */
+    boolean contains(int id) {
+        long[] page = pages.get(id >> PAGE_BITS);
+        return page != null && ((long) WORD.getAcquire(page, word(id)) & 1L << id) != 0;
+    }
+
+    /**
+     * Iterates over the IDs above a cursor. Finding the first one takes
+     * logarithmic time in the number of pages.
+     *
+     * @param afterId only greater IDs are returned
+     * @return the IDs in ascending order
+     */
+    PrimitiveIterator.OfInt iterator(int afterId) {
+        return new IdIterator(afterId);
+    }
+
+    /**
+     * @return index of the word holding the bit of the ID within its page
+     */
+    private static int word(int id) {
+        return (id & (PAGE_SIZE - 1)) >>> 6;
+    }
+
+    /**
+     * Walks the pages in order, scanning each one word by word.
+     */
+    private final class IdIterator implements PrimitiveIterator.OfInt {
+
+        private final Iterator<Map.Entry<Integer, long[]>> remaining;
+
+        private long[] page;
+
+        private int base;
+
+        private int word;
+
+        private long bits;
+
+        private boolean done;
+
+        IdIterator(int afterId) {
+            int first = afterId + 1;
+            remaining = pages.tailMap(first >> PAGE_BITS, true).entrySet().iterator();
+            done = afterId == Integer.MAX_VALUE || !advancePage();
+            if (!done && base == (first & -PAGE_SIZE)) {
+                word = word(first);
+                bits = (long) WORD.getAcquire(page, word) & -1L << first;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!done && bits == 0) {
+                if (++word < WORDS) {
+                    bits = (long) WORD.getAcquire(page, word);
+                } else if (!advancePage()) {
+                    done = true;
+                }
+            }
+            return !done;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int id = base + word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            return id;
+        }
+
+        /**
+         * Moves to the start of the next page.
+         *
+         * @return {@code false} if there is none
+         */
+        private boolean advancePage() {
+            if (!remaining.hasNext()) {
+                return false;
+            }
+            Map.Entry<Integer, long[]> next = remaining.next();
+            page = next.getValue();
+            base = next.getKey() << PAGE_BITS;
+            word = 0;
+            bits = (long) WORD.getAcquire(page, 0);
+            return true;
+        }
+
+    }
+
+}
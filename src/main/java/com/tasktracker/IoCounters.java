@@ -0,0 +1,38 @@
+package com.tasktracker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the file bytes a store read and wrote.
+ */
+public class IoCounters implements IoCountersMBean {
+
+    private final LongAdder bytesRead = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /**
+     * @param bytes number of bytes read from disk
+     */
+    public void read(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * @param bytes number of bytes written to disk
+     */
+    public void written(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.tasktracker;
+
+/**
+ * JMX view of {@link IoCounters}.
+ */
+public interface IoCountersMBean {
+
+    /**
+     * @return total bytes read from the store files
+     */
+    long getBytesRead();
+
+    /**
+     * @return total bytes written to the store files
+     */
+    long getBytesWritten();
+
+}
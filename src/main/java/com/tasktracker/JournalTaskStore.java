@@ -0,0 +1,323 @@
+package com.tasktracker;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link TaskStore} that appends every mutation to a write-ahead journal.
+ * <p>
+ * The store is made of a JSON snapshot (same format as {@link JsonTaskStore})
+ * and a journal file next to it holding one JSON record per line. A write only
+ * appends the changed task, so its cost depends on the size of the change and
+ * not on the size of the store. Once the journal holds more records than the
+ * compaction threshold, the snapshot is rewritten and the journal truncated.
+ * Loading replays the journal on top of the snapshot.
+ * </p>
+ * <p>
+ * Every append is flushed to disk before it returns. Writing several changes
+ * with {@link #saveChanges} costs a single flush.
+ * </p>
+ * <p>
+ * Appends and compactions hold the snapshot's {@link StoreLock} and fail with
+ * {@link ConcurrentUpdateException} when another process wrote the journal or
+ * the snapshot since this store last looked at them.
+ * </p>
+ */
+public class JournalTaskStore implements TaskStore {
+
+    /**
+     * Number of journal records after which the snapshot is compacted by default.
+     */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    private final ObjectMapper mapper = TaskMapper.create();
+
+    private final ObjectWriter recordWriter = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+
+    private final IoCounters io = new IoCounters();
+
+    private final JsonTaskStore snapshot;
+
+    private final Path snapshotPath;
+
+    private final Path journalPath;
+
+    private final int compactionThreshold;
+
+    private int journalRecords;
+
+    private volatile FileStamp journalStamp;
+
+    /**
+     * Creates a journal store with the default compaction threshold.
+     *
+     * @param snapshotPath path to the JSON snapshot; the journal is kept next to it
+     */
+    public JournalTaskStore(Path snapshotPath) {
+        this(snapshotPath, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Creates a journal store.
+     *
+     * @param snapshotPath        path to the JSON snapshot; the journal is kept next to it
+     * @param compactionThreshold number of journal records that triggers a compaction
+     */
+    public JournalTaskStore(Path snapshotPath, int compactionThreshold) {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("Compaction threshold must be positive: " + compactionThreshold);
+        }
+        this.snapshot = new JsonTaskStore(snapshotPath, io);
+        this.snapshotPath = snapshotPath;
+        this.journalPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".journal");
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * @return path of the journal file
+     */
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    /**
+     * Loads the snapshot and replays the journal on top of it.
+     * <p>
+     * A truncated last record, left behind by a crash in the middle of an
+     * append, is ignored. A malformed record anywhere else means the journal
+     * is corrupt, and loading fails rather than drop it.
+     * </p>
+     */
+    @Override
+    public TaskData load() throws IOException {
+        TaskData data = snapshot.load();
+        journalRecords = 0;
+        journalStamp = FileStamp.of(journalPath);
+
+        if (Files.exists(journalPath)) {
+            io.read(Files.size(journalPath));
+            try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                for (int number = 1; line != null; number++) {
+                    String next = reader.readLine();
+                    if (!line.isBlank()) {
+                        Record record;
+                        try {
+                            record = mapper.readValue(line, Record.class);
+                        } catch (JsonProcessingException e) {
+                            if (next == null) {
+                                break;
+                            }
+                            throw new IOException("Corrupt record on line " + number + " of " + journalPath, e);
+                        }
+                        record.applyTo(data);
+                        journalRecords += record.size();
+                    }
+                    line = next;
+                }
+            }
+        }
+
+        return data;
+    }
+
+    @Override
+    public void save(Task task, TaskData data) throws IOException {
+        append(new Record(task, null, null), data);
+    }
+
+    @Override
+    public void delete(int id, TaskData data) throws IOException {
+        append(new Record(null, id, null), data);
+    }
+
+    /**
+     * Appends all changes as a single journal line, so a crash in the middle
+     * of the write drops the whole batch rather than part of it.
+     */
+    @Override
+    public void saveChanges(Collection<Task> saved, Collection<Integer> deleted, TaskData data) throws IOException {
+        List<Record> batch = new ArrayList<>(saved.size() + deleted.size());
+        for (Task task : saved) {
+            batch.add(new Record(task, null, null));
+        }
+        for (int id : deleted) {
+            batch.add(new Record(null, id, null));
+        }
+        append(new Record(null, null, batch), data);
+    }
+
+    /**
+     * Counts the traffic of both the snapshot and the journal.
+     */
+    @Override
+    public IoCounters getIoCounters() {
+        return io;
+    }
+
+    @Override
+    public boolean isModified() throws IOException {
+        return snapshot.isModified() || journalStamp == null || !journalStamp.equals(FileStamp.of(journalPath));
+    }
+
+    @Override
+    public void saveAll(TaskData data) throws IOException {
+        compact(data);
+    }
+
+    /**
+     * Writes the full task set to the snapshot and empties the journal.
+     * <p>
+     * If the process dies between the two steps the journal is simply replayed
+     * over the new snapshot, which is harmless since every record is idempotent.
+     * </p>
+     *
+     * @param data every task currently held by the repository
+     *
+     * @throws IOException if writing fails
+     */
+    public void compact(TaskData data) throws IOException {
+        try (StoreLock lock = StoreLock.acquire(snapshotPath)) {
+            checkJournal();
+            snapshot.saveAll(data);
+            Files.deleteIfExists(journalPath);
+            journalRecords = 0;
+            journalStamp = FileStamp.MISSING;
+        }
+    }
+
+    private void append(Record record, TaskData data) throws IOException {
+        try (StoreLock lock = StoreLock.acquire(snapshotPath)) {
+            checkJournal();
+            if (journalStamp != null && snapshot.isModified()) {
+                throw new ConcurrentUpdateException(snapshotPath, "snapshot was compacted");
+            }
+            if (journalRecords >= compactionThreshold) {
+                compact(data);
+                return;
+            }
+
+            boolean created = !Files.exists(journalPath);
+            String line = recordWriter.writeValueAsString(record) + "\n";
+            ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.position(dropTornRecord(channel));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            }
+            io.written(bytes.limit());
+            if (created) {
+                FileSync.syncDirectory(journalPath);
+            }
+            journalRecords += record.size();
+            journalStamp = FileStamp.of(journalPath);
+        }
+    }
+
+    /**
+     * Cuts off a record left incomplete by a crash, so that the next record
+     * does not leave it in the middle of the journal, where loading would
+     * take it for corruption.
+     *
+     * @param channel the journal, open for reading and writing
+     * @return the end of the last complete record, where the next one goes
+     *
+     * @throws IOException if the journal cannot be read or truncated
+     */
+    private static long dropTornRecord(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(4096);
+        long end = size;
+        while (end > 0) {
+            block.clear().limit((int) Math.min(block.capacity(), end));
+            long start = end - block.limit();
+            while (block.hasRemaining()) {
+                if (channel.read(block, start + block.position()) < 0) {
+                    throw new IOException("Journal shrank while being read");
+                }
+            }
+            for (int i = block.limit() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') {
+                    end = start + i + 1;
+                    if (end < size) {
+                        channel.truncate(end);
+                    }
+                    return end;
+                }
+            }
+            end = start;
+        }
+        if (size > 0) {
+            channel.truncate(0);
+        }
+        return 0;
+    }
+
+    /**
+     * Makes sure nobody appended to the journal since this store last read or wrote it.
+     * Stores that never loaded accept any journal.
+     *
+     * @throws IOException if the journal changed or cannot be inspected
+     */
+    private void checkJournal() throws IOException {
+        if (journalStamp != null && !journalStamp.equals(FileStamp.of(journalPath))) {
+            throw new ConcurrentUpdateException(journalPath, "journal was appended to");
+        }
+    }
+
+    /**
+     * Single journal line: a full task that was put, the ID of a deleted task,
+     * or a batch of such records written together.
+     *
+     * @param task    task that was added or modified, or {@code null}
+     * @param deleted ID of the deleted task, or {@code null}
+     * @param batch   records applied together, or {@code null}
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Record(Task task, Integer deleted, List<Record> batch) {
+
+        /**
+         * Replays this record.
+         *
+         * @param data state to apply the record to
+         */
+        void applyTo(TaskData data) {
+            if (task != null) {
+                data.put(task);
+            } else if (deleted != null) {
+                data.remove(deleted);
+            } else if (batch != null) {
+                for (Record record : batch) {
+                    record.applyTo(data);
+                }
+            }
+        }
+
+        /**
+         * @return number of changes held by this record
+         */
+        int size() {
+            return batch == null ? 1 : batch.size();
+        }
+
+    }
+
+}
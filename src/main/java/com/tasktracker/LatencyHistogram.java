@@ -0,0 +1,139 @@
+package com.tasktracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of
+ * HdrHistogram.
+ * <p>
+ * Every power of two is split into 16 linear sub-buckets, so any recorded
+ * value is reported within about 6% of its true value, from nanoseconds up
+ * to centuries, with a fixed footprint of under 8 KB. Recording is a few
+ * atomic increments and never allocates.
+ * </p>
+ */
+public class LatencyHistogram implements LatencyMBean {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one measurement.
+     *
+     * @param nanos duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos reading taken when the measured work started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / (double) n / 1_000;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileMicros(0.50);
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentileMicros(0.999);
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1_000.0;
+    }
+
+    /**
+     * Returns the value below which the given fraction of measurements fall.
+     *
+     * @param quantile fraction between 0 and 1
+     * @return the highest value of the bucket holding that quantile, in microseconds
+     */
+    public double percentileMicros(double quantile) {
+        return percentile(quantile) / 1_000.0;
+    }
+
+    /**
+     * Returns the value below which the given fraction of measurements fall.
+     *
+     * @param quantile fraction between 0 and 1
+     * @return the highest value of the bucket holding that quantile, in nanoseconds
+     */
+    public long percentile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalent(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Maps a value to its bucket: values below 32 get their own bucket, and
+     * every higher power of two is split into 16 equal sub-buckets.
+     */
+    static int index(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, magnitude - SUB_BUCKET_BITS);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the highest value mapped to the given bucket
+     */
+    static long highestEquivalent(int index) {
+        int shift = Math.max(0, index / SUB_BUCKETS - 1);
+        long lowest = (long) (index - shift * SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.tasktracker;
+
+/**
+ * JMX view of a {@link LatencyHistogram}.
+ */
+public interface LatencyMBean {
+
+    /**
+     * @return number of recorded measurements
+     */
+    long getCount();
+
+    /**
+     * @return mean duration in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * @return median duration in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * @return 99th percentile duration in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * @return 99.9th percentile duration in microseconds
+     */
+    double getP999Micros();
+
+    /**
+     * @return longest duration in microseconds
+     */
+    double getMaxMicros();
+
+}
@@ -0,0 +1,469 @@
+package com.tasktracker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link TaskStore} keeping task metadata in memory and descriptions on disk.
+ * <p>
+ * The store is made of two files. The metadata file ({@code tasks.meta})
+ * holds fixed-width records: status, ID, both timestamps and the location
+ * of the description of a task, or a tombstone for a deleted one. Records
+ * are applied in order, so a later record for an ID replaces an earlier
+ * one. The description file ({@code tasks.0.desc})
+ * holds the UTF-8 descriptions back to back. Loading reads only the
+ * metadata; descriptions are read from the description file by offset when
+ * a task is built, through an LRU cache of recently read ones, so counts,
+ * status filters and time ranges never touch description bytes, and a
+ * loaded task costs its metadata and indexes only.
+ * </p>
+ * <p>
+ * Every write appends new and changed descriptions to the description file.
+ * Saving or deleting tasks appends one record per changed task to the
+ * metadata file, so a status change costs a few dozen bytes however large
+ * the store. Once stale records outnumber the live ones, or when the whole
+ * state is saved, the metadata file is rewritten with one record per task
+ * instead. Replaced descriptions are left behind in the description file;
+ * once they take more space than the live ones, the next write rewrites the
+ * metadata file and copies the live descriptions to a new description file
+ * with the next number, and a later write deletes the old file. A
+ * compacting write leaves the in-memory state pointing at the old file, so
+ * the store reports itself modified and the state is reloaded. Loading
+ * never writes.
+ * </p>
+ * <p>
+ * Writes hold a {@link StoreLock} and fail with {@link ConcurrentUpdateException}
+ * when the generation in the metadata header shows that another process
+ * wrote the store since this one loaded it. The header also holds the end of
+ * the committed records. Appended records are flushed before the header is
+ * patched to cover them, and a rewritten metadata file replaces the old one
+ * atomically after the descriptions it refers to are flushed, so a crash
+ * leaves either the old or the new state.
+ * </p>
+ */
+public class LazyTaskStore implements TaskStore {
+
+    static final int MAGIC = 0x54534B4D;
+
+    static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 36;
+
+    private static final int RECORD_SIZE = 29;
+
+    /**
+     * Status byte of a record marking a deleted task.
+     */
+    private static final int TOMBSTONE = 0xFF;
+
+    private static final long MIN_GARBAGE = 1 << 20;
+
+    private static final long MIN_STALE_RECORDS = 1024;
+
+    private final Path metaPath;
+
+    private final int cacheSize;
+
+    private final IoCounters io = new IoCounters();
+
+    private DescriptionFile descriptions;
+
+    private volatile FileStamp stamp;
+
+    private long generation = -1;
+
+    private long liveBytes;
+
+    /**
+     * Creates a store caching {@value DescriptionFile#DEFAULT_CACHE_SIZE} descriptions.
+     *
+     * @param metaPath path to the metadata file; the description files are kept next to it
+     */
+    public LazyTaskStore(Path metaPath) {
+        this(metaPath, DescriptionFile.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a store.
+     *
+     * @param metaPath  path to the metadata file; the description files are kept next to it
+     * @param cacheSize number of descriptions kept in memory once read
+     */
+    public LazyTaskStore(Path metaPath, int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + cacheSize);
+        }
+        this.metaPath = metaPath;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * @param number description file number, bumped by every compaction
+     * @return path of that description file
+     */
+    public Path descriptionPath(int number) {
+        String name = metaPath.getFileName().toString();
+        String base = name.endsWith(".meta") ? name.substring(0, name.length() - ".meta".length()) : name;
+        return metaPath.resolveSibling(base + "." + number + ".desc");
+    }
+
+    @Override
+    public IoCounters getIoCounters() {
+        return io;
+    }
+
+    /**
+     * Reads the metadata file. Descriptions are not read; the returned state
+     * reads them from the description file on demand.
+     */
+    @Override
+    public synchronized TaskData load() throws IOException {
+        FileStamp loadedStamp = FileStamp.of(metaPath);
+        if (!Files.exists(metaPath)) {
+            stamp = loadedStamp;
+            generation = 0;
+            return new TaskData(0, 1, open(0));
+        }
+
+        TaskData data;
+        try (DataInputStream in = openMeta()) {
+            Header header = readHeader(in);
+            data = new TaskData(header.size(), header.nextId(), open(header.descriptionFile()));
+            Status[] statuses = Status.values();
+            long records = header.end() < 0 ? Long.MAX_VALUE : (header.end() - HEADER_SIZE) / RECORD_SIZE;
+            int status;
+            for (long record = 0; record < records && (status = in.read()) != -1; record++) {
+                int id = in.readInt();
+                LocalDateTime createdAt = TaskTable.fromNanos(in.readLong());
+                LocalDateTime updatedAt = TaskTable.fromNanos(in.readLong());
+                long ref = in.readLong();
+                if (status == TOMBSTONE) {
+                    data.removeStored(id);
+                } else {
+                    data.putStored(new Task(id, null, statuses[status], createdAt, updatedAt), ref);
+                }
+            }
+            generation = header.generation();
+        }
+        io.read(Files.size(metaPath));
+        stamp = loadedStamp;
+        liveBytes = data.getStoredDescriptionBytes();
+
+        return data;
+    }
+
+    @Override
+    public synchronized void save(Task task, TaskData data) throws IOException {
+        write(List.of(task.getId()), List.of(), data);
+    }
+
+    @Override
+    public synchronized void delete(int id, TaskData data) throws IOException {
+        write(List.of(), List.of(id), data);
+    }
+
+    /**
+     * Appends a record per saved or deleted task to the metadata file.
+     */
+    @Override
+    public synchronized void saveChanges(Collection<Task> saved, Collection<Integer> deleted, TaskData data)
+            throws IOException {
+        List<Integer> savedIds = new ArrayList<>(saved.size());
+        for (Task task : saved) {
+            savedIds.add(task.getId());
+        }
+        write(savedIds, deleted, data);
+    }
+
+    @Override
+    public synchronized void saveAll(TaskData data) throws IOException {
+        try (StoreLock lock = StoreLock.acquire(metaPath)) {
+            rewrite(checkGeneration(), data);
+        }
+    }
+
+    @Override
+    public boolean isModified() throws IOException {
+        return stamp == null || !stamp.equals(FileStamp.of(metaPath));
+    }
+
+    /**
+     * @return number of description reads answered from the cache since the last load
+     */
+    public synchronized long getCacheHits() {
+        return descriptions == null ? 0 : descriptions.getHitCount();
+    }
+
+    /**
+     * @return number of description reads that went to the file since the last load
+     */
+    public synchronized long getCacheMisses() {
+        return descriptions == null ? 0 : descriptions.getMissCount();
+    }
+
+    /**
+     * Appends the descriptions held in memory and a record per changed task,
+     * then lets the state drop the appended descriptions. Falls back to
+     * {@link #rewrite} when the metadata file has no committed end yet, the
+     * state reads from another store's file, stale records outnumber the
+     * live ones or the description file is due for compaction.
+     *
+     * @param saved   IDs of added or modified tasks; those no longer in the state are written as deleted
+     * @param deleted IDs of removed tasks
+     */
+    private void write(Collection<Integer> saved, Collection<Integer> deleted, TaskData data) throws IOException {
+        try (StoreLock lock = StoreLock.acquire(metaPath)) {
+            Header current = checkGeneration();
+            DescriptionFile target = open(current.descriptionFile());
+            target.refreshEnd();
+            DescriptionFile source = data.getDescriptionFile();
+            long garbage = target.size() - liveBytes;
+            long records = (current.end() - HEADER_SIZE) / RECORD_SIZE + saved.size() + deleted.size();
+            if (current.end() < 0 || source == null || !source.getPath().equals(target.getPath())
+                    || garbage > liveBytes && garbage > MIN_GARBAGE
+                    || records - data.size() > Math.max(data.size(), MIN_STALE_RECORDS)) {
+                rewrite(current, data);
+                return;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((saved.size() + deleted.size()) * RECORD_SIZE);
+            List<Spill> spills = new ArrayList<>();
+            for (int savedId : saved) {
+                boolean found = data.visitRow(savedId, (id, status, createdAt, updatedAt, description, ref) -> {
+                    long stored = ref;
+                    if (description != null) {
+                        stored = target.append(description);
+                        spills.add(new Spill(id, description, stored));
+                    }
+                    putRecord(buffer, status.ordinal(), id, createdAt, updatedAt, stored);
+                });
+                if (!found) {
+                    putRecord(buffer, TOMBSTONE, savedId, 0, 0, TaskTable.NO_REF);
+                }
+            }
+            for (int id : deleted) {
+                putRecord(buffer, TOMBSTONE, id, 0, 0, TaskTable.NO_REF);
+            }
+            buffer.flip();
+            target.force();
+
+            long end = current.end() + buffer.remaining();
+            try (FileChannel channel = FileChannel.open(metaPath, StandardOpenOption.WRITE)) {
+                channel.truncate(current.end());
+                writeFully(channel, buffer, current.end());
+                channel.force(true);
+                writeFully(channel, headerBytes(new Header(current.generation() + 1, data.getSequence().peek(),
+                        current.descriptionFile(), data.size(), end)), 0);
+                channel.force(false);
+            }
+            io.written(end - current.end() + HEADER_SIZE);
+            generation = current.generation() + 1;
+            stamp = FileStamp.of(metaPath);
+            deleteReplaced(current.descriptionFile());
+            for (Spill spill : spills) {
+                data.spill(spill.id(), spill.description(), spill.ref());
+            }
+            liveBytes = data.getStoredDescriptionBytes();
+        }
+    }
+
+    /**
+     * Appends the descriptions held in memory and rewrites the metadata
+     * file with one record per task, then lets the state drop the appended
+     * descriptions. The caller holds the store lock.
+     * <p>
+     * Descriptions the state reads from another store's file are copied
+     * into this one. When replaced descriptions outweigh the live ones, every
+     * description is copied to a new description file instead.
+     * </p>
+     *
+     * @param current header on disk, checked against the loaded generation
+     */
+    private void rewrite(Header current, TaskData data) throws IOException {
+        DescriptionFile target = open(current.descriptionFile());
+        target.refreshEnd();
+        long garbage = target.size() - liveBytes;
+        boolean compacting = garbage > liveBytes && garbage > MIN_GARBAGE;
+        int number = current.descriptionFile() + (compacting ? 1 : 0);
+        if (compacting) {
+            Files.deleteIfExists(descriptionPath(number));
+            target = new DescriptionFile(descriptionPath(number), cacheSize, io);
+        }
+        DescriptionFile source = data.getDescriptionFile();
+        boolean ownState = source != null && source.getPath().equals(target.getPath());
+        DescriptionFile written = target;
+        long[] live = {0};
+        int[] count = {0};
+
+        Path tempPath = metaPath.resolveSibling(metaPath.getFileName() + ".tmp");
+        List<Spill> spills = new ArrayList<>();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempPath), 64 * 1024))) {
+            out.write(new byte[HEADER_SIZE]);
+            data.forEachRow((id, status, createdAt, updatedAt, description, ref) -> {
+                long stored = ref;
+                if (description != null) {
+                    stored = written.append(description);
+                    if (ownState) {
+                        spills.add(new Spill(id, description, stored));
+                    }
+                } else if (ref != TaskTable.NO_REF && !ownState) {
+                    stored = source.copyTo(ref, written);
+                }
+                if (stored != TaskTable.NO_REF) {
+                    live[0] += DescriptionFile.length(stored);
+                }
+                out.writeByte(status.ordinal());
+                out.writeInt(id);
+                out.writeLong(createdAt);
+                out.writeLong(updatedAt);
+                out.writeLong(stored);
+                count[0]++;
+            });
+        }
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            writeFully(channel, headerBytes(new Header(current.generation() + 1, data.getSequence().peek(),
+                    number, count[0], HEADER_SIZE + (long) count[0] * RECORD_SIZE)), 0);
+        }
+        io.written(Files.size(tempPath));
+        target.force();
+        FileSync.sync(tempPath);
+        Files.move(tempPath, metaPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileSync.syncDirectory(metaPath);
+        generation = current.generation() + 1;
+        liveBytes = live[0];
+
+        if (compacting) {
+            descriptions = target;
+            stamp = null;
+        } else {
+            stamp = FileStamp.of(metaPath);
+            deleteReplaced(number);
+        }
+        for (Spill spill : spills) {
+            data.spill(spill.id(), spill.description(), spill.ref());
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, int status, int id, long createdAt, long updatedAt, long ref) {
+        buffer.put((byte) status).putInt(id).putLong(createdAt).putLong(updatedAt).putLong(ref);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        for (long offset = position; buffer.hasRemaining(); ) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * Deletes the description files a compaction replaced. A file still
+     * open elsewhere may refuse to go on some platforms; the next write
+     * tries again.
+     */
+    private void deleteReplaced(int number) {
+        for (int old = number - 1; old >= 0 && Files.exists(descriptionPath(old)); old--) {
+            try {
+                Files.delete(descriptionPath(old));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the header on disk and refuses to go on if another process
+     * wrote the store since this one loaded it.
+     *
+     * @return the header on disk, or that of an empty store if there is no file
+     * @throws ConcurrentUpdateException if the store was written by someone else
+     */
+    private Header checkGeneration() throws IOException {
+        Header current = new Header(0, 1, 0, 0, -1);
+        if (Files.exists(metaPath)) {
+            try (DataInputStream in = openMeta()) {
+                current = readHeader(in);
+            }
+        }
+        if (generation != -1 && current.generation() != generation) {
+            throw new ConcurrentUpdateException(metaPath,
+                    "expected generation " + generation + ", found " + current.generation());
+        }
+        return current;
+    }
+
+    /**
+     * Returns the description file with the given number, reusing the open
+     * one when it matches.
+     */
+    private DescriptionFile open(int number) throws IOException {
+        Path path = descriptionPath(number);
+        if (descriptions == null || !descriptions.getPath().equals(path)) {
+            descriptions = new DescriptionFile(path, cacheSize, io);
+        }
+        return descriptions;
+    }
+
+    private DataInputStream openMeta() throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(metaPath), 64 * 1024));
+    }
+
+    private Header readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(metaPath + " is not a task metadata file");
+        }
+        int version = in.readInt();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported metadata file version " + version + " in " + metaPath);
+        }
+        return new Header(in.readLong(), in.readInt(), in.readInt(), in.readInt(),
+                version == 1 ? -1 : in.readLong());
+    }
+
+    private static ByteBuffer headerBytes(Header header) {
+        return ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(header.generation())
+                .putInt(header.nextId())
+                .putInt(header.descriptionFile())
+                .putInt(header.size())
+                .putLong(header.end())
+                .flip();
+    }
+
+    /**
+     * Header of the metadata file.
+     *
+     * @param generation      number of writes the store has seen
+     * @param nextId          next ID the sequence will hand out
+     * @param descriptionFile number of the description file the records point into
+     * @param size            number of tasks, used to presize the state
+     * @param end             end of the committed records, or -1 for a version 1 file, read to its end
+     */
+    private record Header(long generation, int nextId, int descriptionFile, int size, long end) {
+    }
+
+    /**
+     * A description written to the description file, to be dropped from memory.
+     *
+     * @param id          task ID
+     * @param description the description as it was written
+     * @param ref         where it was written
+     */
+    private record Spill(int id, String description, long ref) {
+    }
+
+}
@@ -0,0 +1,285 @@
+package com.tasktracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache of rendered task lists, keyed by status filter, page and layout.
+ * <p>
+ * Every status has a version counter that the repository bumps whenever a
+ * task enters, leaves or changes within that status. A rendered list
+ * remembers the version of its status (the sum of all of them for an
+ * unfiltered list) taken before rendering, and is only served while that
+ * version is unchanged, so a change to a DONE task never evicts the TODO
+ * list and a list rendered while a change was running is never served.
+ * </p>
+ * <p>
+ * Entries are evicted least recently used first once their total size
+ * exceeds the byte budget. A list is captured while it is streamed to the
+ * caller, and lists larger than an eighth of the budget are streamed
+ * without being kept.
+ * </p>
+ */
+public class ListCache {
+
+    /**
+     * Byte budget used when none is given.
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L << 20;
+
+    private final long maxBytes;
+
+    private final long maxEntryBytes;
+
+    private final AtomicLongArray versions = new AtomicLongArray(Status.values().length);
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_MAX_BYTES} bytes.
+     */
+    public ListCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a cache holding up to the given number of bytes.
+     *
+     * @param maxBytes byte budget shared by all entries
+     */
+    public ListCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.max(1, maxBytes / 8);
+    }
+
+    /**
+     * Returns the version a list must be rendered against. Take it before
+     * reading the tasks.
+     *
+     * @param status status filter, or {@code null} for every task
+     * @return the current version of that list
+     */
+    public long version(Status status) {
+        if (status != null) {
+            return versions.get(status.ordinal());
+        }
+        long sum = 0;
+        for (int i = 0; i < versions.length(); i++) {
+            sum += versions.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Invalidates the lists showing tasks with the given status. Call after
+     * the change is visible.
+     *
+     * @param status status of a task that was added, removed or changed
+     */
+    public void changed(Status status) {
+        versions.incrementAndGet(status.ordinal());
+    }
+
+    /**
+     * Invalidates every list, as after a reload.
+     */
+    public void changedAll() {
+        for (int i = 0; i < versions.length(); i++) {
+            versions.incrementAndGet(i);
+        }
+    }
+
+    /**
+     * Looks up a rendered list.
+     *
+     * @param key     list identity
+     * @param version version taken with {@link #version(Status)}
+     * @return the rendered list, or {@code null} if there is none for this version
+     */
+    public Entry get(Key key, long version) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version() == version) {
+                hits.incrementAndGet();
+                return entry;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                totalBytes -= entry.bytes().length;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Wraps a destination stream so that what is written to it can be cached.
+     *
+     * @param out destination of the rendered list
+     * @return a stream writing through to {@code out}
+     */
+    public Capture capture(OutputStream out) {
+        return new Capture(out, maxEntryBytes);
+    }
+
+    /**
+     * Stores a list captured while it was streamed, unless it was too large.
+     *
+     * @param key     list identity
+     * @param version version taken before rendering
+     * @param capture stream the list was written to
+     * @param count   number of tasks in the list
+     */
+    public void put(Key key, long version, Capture capture, int count) {
+        byte[] bytes = capture.bytes();
+        if (bytes == null) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(version, bytes, count));
+            if (previous != null) {
+                totalBytes -= previous.bytes().length;
+            }
+            totalBytes += bytes.length;
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().getValue().bytes().length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups that had to render the list
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of entries dropped to stay within the byte budget
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return number of cached lists
+     */
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return total size of the cached lists in bytes
+     */
+    public long getByteCount() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Identity of a rendered list.
+     *
+     * @param status  status filter, or {@code null} for every task
+     * @param afterId only tasks with a greater ID are listed
+     * @param limit   maximum number of tasks listed
+     * @param compact {@code true} for single-line JSON
+     */
+    public record Key(Status status, int afterId, int limit, boolean compact) {
+    }
+
+    /**
+     * A rendered list.
+     *
+     * @param version version of the list it was rendered against
+     * @param bytes   the rendered list
+     * @param count   number of tasks in the list
+     */
+    public record Entry(long version, byte[] bytes, int count) {
+    }
+
+    /**
+     * Stream writing through to the caller while keeping a copy of up to a
+     * given number of bytes.
+     */
+    public static final class Capture extends OutputStream {
+
+        private final OutputStream out;
+
+        private final int limit;
+
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Capture(OutputStream out, long limit) {
+            this.out = out;
+            this.limit = (int) Math.min(limit, Integer.MAX_VALUE - 8);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            keep(1);
+            if (copy != null) {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            keep(len);
+            if (copy != null) {
+                copy.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * @return the bytes written, or {@code null} if there were too many to keep
+         */
+        byte[] bytes() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        private void keep(int length) {
+            if (copy != null && copy.size() + length > limit) {
+                copy = null;
+            }
+        }
+
+    }
+
+}
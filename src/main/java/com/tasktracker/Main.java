@@ -1,8 +1,20 @@
 package com.tasktracker;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-
+import javax.management.JMException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 /**
  * Entry point for the Task Tracker CLI application.
@@ -13,22 +25,73 @@ import java.nio.file.Path;
  */
 public class Main {
 
+    private static final int DEFAULT_HTTP_PORT = 8080;
+
     /**
      * Application entry point. Parses CLI arguments and executes commands.
+     * <p>
+     * When a daemon started with {@code serve} is listening, commands are
+     * forwarded to it instead of being executed in this JVM.
+     * </p>
      *
      * @param args command-line arguments
      *
-     * @throws JsonProcessingException if JSON parsing or serialization fails
+     * @throws IOException if reading or writing tasks fails
      */
-    public static void main(String[] args) throws JsonProcessingException {
+    public static void main(String[] args) throws IOException {
         Path repoFilePath = Path.of("tasks.json");
-        TaskService taskService = new TaskService(repoFilePath);
+        if (args.length == 0) {
+            printHelp(System.out);
+            return;
+        }
+
+        if (args[0].equals("serve")) {
+            serve(repoFilePath);
+            return;
+        }
+        if (args[0].equals("http")) {
+            int port;
+            try {
+                port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HTTP_PORT;
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+            if (args.length > 2 || port < 0 || port > 65535) {
+                System.out.println("Usage: task-cli http [port]");
+                return;
+            }
+            serveHttp(repoFilePath, port);
+            return;
+        }
+        if (isForwardable(args[0]) && TaskClient.forward(socketPath(), args, System.out)) {
+            return;
+        }
+        if (args[0].equals("watch")) {
+            System.out.println("No daemon is running; start one with \"task-cli serve\" to watch changes.");
+            return;
+        }
+
+        TaskRepository repository = new TaskRepository(openStore(repoFilePath));
+        repository.setSearchIndexPath(searchIndexPath(repoFilePath));
+        run(args, new TaskService(repository), System.out);
+    }
+
+    /**
+     * Executes one command.
+     *
+     * @param args        command-line arguments, starting with the command name
+     * @param taskService service the command runs against
+     * @param out         destination of the command output
+     *
+     * @throws IOException if reading or writing tasks fails
+     */
+    static void run(String[] args, TaskService taskService, PrintStream out) throws IOException {
         String command = args[0];
 
         switch (command) {
             case "add" -> {
                 if (args.length != 2) {
-                    System.out.println("Usage: task-cli add \"Task description\"");
+                    out.println("Usage: task-cli add \"Task description\"");
                     return;
                 }
 
@@ -36,107 +99,373 @@ public class Main {
                 int taskId = taskService.addTask(description);
 
                 if (taskId != -1) {
-                    System.out.println("Task added successfully (ID: " + taskId + ")");
+                    out.println("Task added successfully (ID: " + taskId + ")");
                 } else {
-                    System.out.println("Error adding task.");
+                    out.println("Error adding task.");
                 }
             }
 
             case "update" -> {
                 if (args.length != 3) {
-                    System.out.println("Usage: task-cli update <id> \"New description\"");
+                    out.println("Usage: task-cli update <id> \"New description\"");
                     return;
                 }
 
                 int id = Integer.parseInt(args[1]);
                 String description = args[2];
                 if (taskService.updateTask(id, description)) {
-                    System.out.println("Task updated.");
+                    out.println("Task updated.");
                 } else {
-                    System.out.println("Task not found.");
+                    out.println("Task not found.");
                 }
             }
 
             case "delete" -> {
                 if (args.length != 2) {
-                    System.out.println("Usage: task-cli delete <id>");
+                    out.println("Usage: task-cli delete <id>");
                     return;
                 }
 
                 int id = Integer.parseInt(args[1]);
 
                 if (taskService.deleteTask(id)) {
-                    System.out.println("Task deleted.");
+                    out.println("Task deleted.");
                 } else {
-                    System.out.println("Task not found.");
+                    out.println("Task not found.");
                 }
             }
 
             case "mark-in-progress" -> {
                 if (args.length != 2) {
-                    System.out.println("Usage: task-cli mark-in-progress <id>");
+                    out.println("Usage: task-cli mark-in-progress <id>");
                     return;
                 }
 
                 int id = Integer.parseInt(args[1]);
 
                 if (taskService.markInProgress(id)) {
-                    System.out.println("Task marked as in progress.");
+                    out.println("Task marked as in progress.");
                 } else {
-                    System.out.println("Task not found.");
+                    out.println("Task not found.");
                 }
             }
 
             case "mark-done" -> {
                 if (args.length != 2) {
-                    System.out.println("Usage: task-cli mark-done <id>");
+                    out.println("Usage: task-cli mark-done <id>");
                     return;
                 }
 
                 int id = Integer.parseInt(args[1]);
 
                 if (taskService.markDone(id)) {
-                    System.out.println("Task marked as done.");
+                    out.println("Task marked as done.");
                 } else {
-                    System.out.println("Task not found.");
+                    out.println("Task not found.");
                 }
 
             }
 
             case "list" -> {
-                if (args.length == 1) {
-                    taskService.listAll();
+                boolean compact = false;
+                int afterId = 0;
+                int limit = Integer.MAX_VALUE;
+                String filter = null;
+                LocalDateTime[] created = new LocalDateTime[2];
+                LocalDateTime[] updated = new LocalDateTime[2];
+                boolean extra = false;
+                try {
+                    for (int i = 1; i < args.length; i++) {
+                        switch (args[i]) {
+                            case "--compact" -> compact = true;
+                            case "--after" -> afterId = Integer.parseInt(args[++i]);
+                            case "--limit" -> limit = Integer.parseInt(args[++i]);
+                            case "--created-after" -> created[0] = parseTime(args[++i]);
+                            case "--created-before" -> created[1] = parseTime(args[++i]);
+                            case "--updated-since" -> updated[0] = parseTime(args[++i]);
+                            case "--updated-before" -> updated[1] = parseTime(args[++i]);
+                            default -> {
+                                extra |= filter != null;
+                                filter = args[i];
+                            }
+                        }
+                    }
+                } catch (IndexOutOfBoundsException | NumberFormatException | DateTimeParseException e) {
+                    limit = -1;
+                }
+                boolean byCreated = created[0] != null || created[1] != null;
+                boolean byUpdated = updated[0] != null || updated[1] != null;
+                if (extra || afterId < 0 || limit < 0 || (byCreated && byUpdated)
+                        || ((byCreated || byUpdated) && afterId > 0)) {
+                    out.println("""
+                            Usage: task-cli list [status] [--limit <n>] [--after <id>] [--compact]
+                                   task-cli list [status] [--created-after <time>] [--created-before <time>] [--limit <n>]
+                                   task-cli list [status] [--updated-since <time>] [--updated-before <time>] [--limit <n>]
+                            Times are ISO dates (2024-05-01) or date-times (2024-05-01T09:30).""");
+                    return;
+                }
+
+                Status status = null;
+                if (filter != null) {
+                    status = parseStatus(filter);
+                    if (status == null) {
+                        out.println("Unknown status: " + filter);
+                        return;
+                    }
+                }
+                if (byCreated) {
+                    taskService.listByTime(TimeIndex.Field.CREATED, created[0], created[1], status, limit, compact);
+                } else if (byUpdated) {
+                    taskService.listByTime(TimeIndex.Field.UPDATED, updated[0], updated[1], status, limit, compact);
                 } else {
-                    listByStatus(args[1], taskService);
+                    taskService.list(status, afterId, limit, compact);
+                }
+            }
+
+            case "count" -> taskService.countByStatus();
+
+            case "stats" -> taskService.stats();
+
+            case "search" -> {
+                boolean compact = false;
+                int limit = Integer.MAX_VALUE;
+                StringBuilder query = new StringBuilder();
+                try {
+                    for (int i = 1; i < args.length; i++) {
+                        switch (args[i]) {
+                            case "--compact" -> compact = true;
+                            case "--limit" -> limit = Integer.parseInt(args[++i]);
+                            default -> query.append(query.isEmpty() ? "" : " ").append(args[i]);
+                        }
+                    }
+                } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                    limit = -1;
+                }
+                if (query.isEmpty() || limit < 0) {
+                    out.println("Usage: task-cli search <query> [--limit <n>] [--compact]");
+                    return;
+                }
+
+                taskService.search(query.toString(), limit, compact);
+            }
+
+            case "watch" -> {
+                long afterSequence = -1;
+                boolean valid = args.length == 1;
+                if (args.length == 3 && args[1].equals("--after")) {
+                    try {
+                        afterSequence = Long.parseLong(args[2]);
+                        valid = true;
+                    } catch (NumberFormatException e) {
+                        valid = false;
+                    }
+                }
+                if (!valid) {
+                    out.println("Usage: task-cli watch [--after <sequence>]");
+                    return;
+                }
+                taskService.watch(afterSequence);
+            }
+
+            case "batch" -> {
+                if (args.length > 2) {
+                    out.println("Usage: task-cli batch [file]");
+                    return;
+                }
+
+                try (BufferedReader reader = args.length == 2
+                        ? Files.newBufferedReader(Path.of(args[1]))
+                        : new BufferedReader(new InputStreamReader(System.in))) {
+                    taskService.runBatch(reader);
                 }
             }
 
-            default -> printHelp();
+            case "import" -> {
+                TaskTransfer.Format format = transferFormat(args);
+                if (format == null) {
+                    out.println("Usage: task-cli import <file|-> [--format csv|ndjson]");
+                    return;
+                }
+
+                try (BufferedReader reader = args[1].equals("-")
+                        ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                        : Files.newBufferedReader(Path.of(args[1]))) {
+                    taskService.importTasks(reader, format);
+                }
+            }
+
+            case "export" -> {
+                TaskTransfer.Format format = transferFormat(args);
+                if (format == null) {
+                    out.println("Usage: task-cli export <file|-> [--format csv|ndjson]");
+                    return;
+                }
+
+                if (args[1].equals("-")) {
+                    taskService.exportTasks(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)),
+                            format);
+                    return;
+                }
+                try (BufferedWriter writer = Files.newBufferedWriter(Path.of(args[1]))) {
+                    out.println("Exported " + taskService.exportTasks(writer, format) + " tasks.");
+                }
+            }
+
+            case "convert" -> {
+                if (args.length != 3) {
+                    out.println("Usage: task-cli convert <source> <target>");
+                    return;
+                }
+
+                int converted = TaskStores.convert(Path.of(args[1]), Path.of(args[2]));
+                out.println("Converted " + converted + " tasks.");
+            }
+
+            default -> printHelp(out);
+        }
+
+    }
+
+    /**
+     * Runs the daemon until the process is stopped.
+     */
+    private static void serve(Path repoFilePath) throws IOException {
+        Duration commitWindow = Duration.ofMillis(Long.getLong("tasktracker.commitWindowMillis", 0));
+        TaskRepository repository = new TaskRepository(openStore(repoFilePath), ReloadPolicy.ON_CHANGE, commitWindow);
+        repository.setSearchIndexPath(searchIndexPath(repoFilePath));
+        registerMetrics(repository, "daemon");
+        Path socketPath = socketPath();
+
+        try (TaskDaemon daemon = new TaskDaemon(socketPath, repository)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+            System.out.println("Serving " + repoFilePath + " on " + socketPath);
+            daemon.serve();
         }
+    }
 
+    /**
+     * Runs the HTTP API until the process is stopped.
+     */
+    private static void serveHttp(Path repoFilePath, int port) throws IOException {
+        Duration commitWindow = Duration.ofMillis(Long.getLong("tasktracker.commitWindowMillis", 0));
+        TaskRepository repository = new TaskRepository(openStore(repoFilePath), ReloadPolicy.ON_CHANGE, commitWindow);
+        repository.setSearchIndexPath(searchIndexPath(repoFilePath));
+        registerMetrics(repository, "http");
+        TaskHttpServer.enableNoDelay();
+        TaskHttpServer server = new TaskHttpServer(new InetSocketAddress(port), repository);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Serving " + repoFilePath + " on http://localhost:" + server.getPort() + "/tasks");
     }
 
     /**
-     * Lists tasks filtered by the provided status string.
+     * Exposes the metrics of a long-running repository over JMX. Failing to
+     * register only costs the JMX view; {@code stats} still works.
+     */
+    private static void registerMetrics(TaskRepository repository, String scope) {
+        try {
+            repository.getMetrics().registerMBeans(scope);
+        } catch (JMException e) {
+            System.out.println("JMException: " + e);
+        }
+    }
+
+    /**
+     * Tells whether a command may run in the daemon. Commands reading local
+     * files or standard input, and those starting a server, always run in
+     * the calling process.
      *
-     * @param status      the status filter ("done", "todo", "in-progress")
-     * @param taskService service used to access task operations
-     * @throws JsonProcessingException if JSON parsing fails
+     * @param command command name
+     * @return {@code true} if the daemon may run the command
      */
-    private static void listByStatus(String status, TaskService taskService) throws JsonProcessingException {
-        switch (status) {
-            case "done" -> taskService.listDone();
-            case "todo" -> taskService.listTodo();
-            case "in-progress" -> taskService.listInProgress();
-            default -> System.out.println("Unknown status: " + status);
+    static boolean isForwardable(String command) {
+        return !command.equals("batch") && !command.equals("convert")
+                && !command.equals("import") && !command.equals("export")
+                && !command.equals("serve") && !command.equals("http");
+    }
+
+    /**
+     * Picks the format of an {@code import} or {@code export} command: the
+     * one given with {@code --format}, else CSV for {@code .csv} files and
+     * NDJSON otherwise.
+     *
+     * @param args command-line arguments, starting with the command name
+     * @return the format, or {@code null} if the arguments are invalid
+     */
+    private static TaskTransfer.Format transferFormat(String[] args) {
+        if (args.length == 4 && args[2].equals("--format")) {
+            try {
+                return TaskTransfer.Format.parse(args[3]);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
         }
+        if (args.length != 2) {
+            return null;
+        }
+        return args[1].equals("-") ? TaskTransfer.Format.NDJSON : TaskTransfer.Format.forPath(Path.of(args[1]));
+    }
+
+    private static Path searchIndexPath(Path repoFilePath) {
+        return repoFilePath.resolveSibling(repoFilePath.getFileName() + ".idx");
+    }
+
+    private static Path socketPath() {
+        return Path.of(System.getProperty("tasktracker.socket", "task-cli.sock"));
+    }
+
+    /**
+     * Opens the storage backend selected by the {@code tasktracker.storage}
+     * system property ("json" by default, "journal", "mapped", "sharded" or "lazy").
+     *
+     * @param repoFilePath path to the main task file
+     * @return the selected store
+     */
+    private static TaskStore openStore(Path repoFilePath) {
+        String storage = System.getProperty("tasktracker.storage", "json");
+
+        return switch (storage) {
+            case "journal" -> new JournalTaskStore(repoFilePath);
+            case "mapped" -> new MappedTaskStore(repoFilePath.resolveSibling("tasks.bin"));
+            case "lazy" -> new LazyTaskStore(repoFilePath.resolveSibling("tasks.meta"),
+                    Integer.getInteger("tasktracker.descriptionCache", DescriptionFile.DEFAULT_CACHE_SIZE));
+            case "sharded" -> new ShardedTaskStore(repoFilePath,
+                    Integer.getInteger("tasktracker.shards", ShardedTaskStore.DEFAULT_SHARD_COUNT));
+            default -> new JsonTaskStore(repoFilePath, Boolean.getBoolean("tasktracker.compress"));
+        };
+    }
+
+    /**
+     * Parses a CLI status filter.
+     *
+     * @param status the status filter ("done", "todo", "in-progress")
+     * @return the status, or {@code null} if the filter is unknown
+     */
+    private static Status parseStatus(String status) {
+        return switch (status) {
+            case "done" -> Status.DONE;
+            case "todo" -> Status.TODO;
+            case "in-progress" -> Status.IN_PROGRESS;
+            default -> null;
+        };
+    }
+
+    /**
+     * Parses an ISO date, meaning the start of that day, or an ISO date-time.
+     *
+     * @param time the text to parse
+     * @return the parsed time
+     * @throws DateTimeParseException if the text is neither
+     */
+    private static LocalDateTime parseTime(String time) {
+        return time.contains("T") ? LocalDateTime.parse(time) : LocalDate.parse(time).atStartOfDay();
     }
 
     /**
      * Prints the help menu showing supported CLI commands.
      */
-    private static void printHelp() {
-        System.out.println("""
+    private static void printHelp(PrintStream out) {
+        out.println("""
                 Usage:
                   task-cli add "Task description"
                   task-cli update <id> "New description"
@@ -147,6 +476,20 @@ public class Main {
                   task-cli list done
                   task-cli list todo
                   task-cli list in-progress
+                  task-cli list [status] --compact
+                  task-cli list [status] --limit <n> [--after <id>]
+                  task-cli list [status] --created-after <time> [--created-before <time>]
+                  task-cli list [status] --updated-since <time> [--updated-before <time>]
+                  task-cli count
+                  task-cli stats
+                  task-cli watch [--after <sequence>]
+                  task-cli search <query> [--limit <n>]
+                  task-cli batch [file]
+                  task-cli convert <source> <target>
+                  task-cli import <file|-> [--format csv|ndjson]
+                  task-cli export <file|-> [--format csv|ndjson]
+                  task-cli serve
+                  task-cli http [port]
                 """);
     }
 
@@ -0,0 +1,742 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link TaskStore} laying tasks out in a memory-mapped binary file.
+ * <p>
+ * The file starts with a fixed header, followed by a region of fixed-width
+ * slots (ID, status, created/updated timestamps as epoch milliseconds and
+ * the location of the description) and a string heap holding the UTF-8
+ * descriptions. A single task is read or updated in place without decoding
+ * the rest of the file. Descriptions that change are appended to the heap;
+ * the slots and heap are rewritten, dropping the stale bytes, once the slot
+ * region or the heap is full.
+ * </p>
+ * <p>
+ * A rewrite never touches the data the header points to: the new slots and
+ * heap are written to free space before or after them, growing the file if
+ * needed, and forced to disk before the header is switched over. The header
+ * fits in one disk sector, so a crash during a rewrite leaves either the old
+ * or the new data in place.
+ * </p>
+ * <p>
+ * Writes hold a {@link StoreLock} and fail with {@link ConcurrentUpdateException}
+ * when the generation counter in the header shows that another process wrote
+ * the file since this store last loaded it. The counter also makes reads
+ * lock-free: a writer makes it odd while it changes slots or the header and
+ * even again once done, and a reader retries when the counter was odd or
+ * moved while it decoded. Readers that keep losing the race, or find a
+ * counter left odd by a crashed writer, read under the lock instead.
+ * </p>
+ * <p>
+ * Readers never touch the mapping and slot index used for writing: they map
+ * the file and index its slots into a {@link Snapshot} of their own, which
+ * is published for later readers once it is complete. Only writers, under
+ * the lock, change the write mapping and the generation they compare with.
+ * </p>
+ * <p>
+ * Timestamps are stored as UTC epoch milliseconds, so sub-millisecond
+ * precision is lost. The whole file must fit in a single 2 GB mapping.
+ * </p>
+ */
+public class MappedTaskStore implements TaskStore {
+
+    static final int MAGIC = 0x54534B31;
+
+    static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 64;
+
+    static final int SLOT_SIZE = 32;
+
+    private static final int MIN_SLOTS = 1024;
+
+    private static final int MIN_HEAP = 64 * 1024;
+
+    private static final int NEXT_ID = 8;
+
+    private static final int CAPACITY = 12;
+
+    private static final int SLOT_COUNT = 16;
+
+    private static final int LIVE_COUNT = 20;
+
+    private static final int HEAP_END = 24;
+
+    static final int GENERATION = 32;
+
+    private static final int DATA_START = 40;
+
+    private static final int DATA_END = 44;
+
+    private static final int SLOT_ID = 0;
+
+    private static final int SLOT_STATUS = 4;
+
+    private static final int SLOT_CREATED = 8;
+
+    private static final int SLOT_UPDATED = 16;
+
+    private static final int SLOT_DESCRIPTION = 24;
+
+    private static final int SLOT_LENGTH = 28;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final Status[] STATUSES = Status.values();
+
+    private static final int OPTIMISTIC_READS = 16;
+
+    private final Path filePath;
+
+    private final IoCounters io = new IoCounters();
+
+    private final HashMap<Integer, Integer> slotsById = new HashMap<>();
+
+    private final AtomicLong loadedGeneration = new AtomicLong(-1);
+
+    private volatile MappedByteBuffer buffer;
+
+    private volatile long generation = -1;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Creates a store bound to the specified binary file.
+     *
+     * @param filePath path to the binary file used to store tasks
+     */
+    public MappedTaskStore(Path filePath) {
+        this.filePath = filePath;
+    }
+
+    @Override
+    public TaskData load() throws IOException {
+        return readConsistent(locked -> {
+            Snapshot current = snapshot(locked);
+            if (current == null) {
+                return new TaskData();
+            }
+
+            ByteBuffer mapped = current.layout().buffer();
+            long stable = beginRead(mapped, locked);
+            checkIndexed(current, stable);
+            TaskData data = new TaskData(mapped.getInt(LIVE_COUNT), mapped.getInt(NEXT_ID));
+            for (Map.Entry<Integer, Integer> slot : current.slots().entrySet()) {
+                data.put(decode(current.layout(), slot.getValue()));
+            }
+            endRead(mapped, stable, locked);
+            io.read(HEADER_SIZE + (long) current.slots().size() * SLOT_SIZE + mapped.getInt(HEAP_END));
+            loadedGeneration.accumulateAndGet(stable, Math::max);
+
+            return data;
+        });
+    }
+
+    /**
+     * Reads a single task straight from the mapping.
+     *
+     * @param id task ID
+     *
+     * @return the task, or {@code null} if there is none with this ID
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    public Task read(int id) throws IOException {
+        return readConsistent(locked -> {
+            Snapshot current = snapshot(locked);
+            if (current == null) {
+                return null;
+            }
+
+            ByteBuffer mapped = current.layout().buffer();
+            long stable = beginRead(mapped, locked);
+            checkIndexed(current, stable);
+            Integer slot = current.slots().get(id);
+            Task task = slot == null ? null : decode(current.layout(), slot);
+            endRead(mapped, stable, locked);
+
+            return task;
+        });
+    }
+
+    /**
+     * Writes the task into its slot, appending a new slot for a new task.
+     * The description is only appended to the heap if it changed.
+     */
+    @Override
+    public void save(Task task, TaskData data) throws IOException {
+        try (StoreLock lock = StoreLock.acquire(filePath)) {
+            if (!prepareWrite()) {
+                saveAll(data);
+                return;
+            }
+            writeSlot(task, data);
+        }
+    }
+
+    private void writeSlot(Task task, TaskData data) throws IOException {
+        Layout layout = Layout.of(buffer);
+        Integer slot = slotsById.get(task.getId());
+        String stored = slot == null ? null : readDescription(layout, slot);
+        byte[] description = slot != null && task.getDescription() != null && task.getDescription().equals(stored)
+                ? null : encode(task.getDescription());
+
+        int slotCount = buffer.getInt(SLOT_COUNT);
+        boolean slotsFull = slot == null && slotCount == buffer.getInt(CAPACITY);
+        boolean heapFull = description != null
+                && buffer.getInt(HEAP_END) + description.length > layout.dataEnd() - layout.heapStart();
+        if (slotsFull || heapFull) {
+            saveAll(data);
+            return;
+        }
+
+        long before = generation;
+        boolean moved = slot == null;
+        beginWrite();
+        if (slot == null) {
+            slot = slotCount;
+            slotsById.put(task.getId(), slot);
+            buffer.putInt(SLOT_COUNT, slotCount + 1);
+            buffer.putInt(LIVE_COUNT, buffer.getInt(LIVE_COUNT) + 1);
+        }
+
+        int position = layout.slotPosition(slot);
+        buffer.putInt(position + SLOT_ID, task.getId());
+        buffer.put(position + SLOT_STATUS, (byte) task.getStatus().ordinal());
+        buffer.putLong(position + SLOT_CREATED, toMillis(task.getCreatedAt()));
+        buffer.putLong(position + SLOT_UPDATED, toMillis(task.getUpdatedAt()));
+        if (description != null) {
+            buffer.putInt(position + SLOT_DESCRIPTION, appendToHeap(layout, description));
+            buffer.putInt(position + SLOT_LENGTH, task.getDescription() == null ? -1 : description.length);
+        }
+        buffer.putInt(NEXT_ID, data.getSequence().peek());
+        commit(position, SLOT_SIZE);
+        io.written(SLOT_SIZE + (description == null ? 0 : description.length));
+        if (!moved) {
+            carrySnapshot(before);
+        }
+    }
+
+    /**
+     * Clears the slot of the deleted task.
+     */
+    @Override
+    public void delete(int id, TaskData data) throws IOException {
+        try (StoreLock lock = StoreLock.acquire(filePath)) {
+            if (!prepareWrite()) {
+                return;
+            }
+            clearSlot(id);
+        }
+    }
+
+    /**
+     * Writes every change into its slot while holding the lock once.
+     */
+    @Override
+    public void saveChanges(Collection<Task> saved, Collection<Integer> deleted, TaskData data) throws IOException {
+        try (StoreLock lock = StoreLock.acquire(filePath)) {
+            if (!prepareWrite()) {
+                saveAll(data);
+                return;
+            }
+            for (Task task : saved) {
+                writeSlot(task, data);
+            }
+            for (int id : deleted) {
+                clearSlot(id);
+            }
+        }
+    }
+
+    private void clearSlot(int id) throws IOException {
+        Integer slot = slotsById.remove(id);
+        if (slot != null) {
+            int position = Layout.of(buffer).slotPosition(slot);
+            beginWrite();
+            buffer.putInt(position + SLOT_ID, 0);
+            buffer.putInt(LIVE_COUNT, buffer.getInt(LIVE_COUNT) - 1);
+            commit(position, SLOT_SIZE);
+            io.written(SLOT_SIZE);
+        }
+    }
+
+    /**
+     * Rewrites the slots and heap with room for twice the current tasks and
+     * descriptions, then switches the header to them.
+     * <p>
+     * The new data goes before the current data if it fits there, and after
+     * it otherwise. The file is never shrunk, since a mapped file cannot be
+     * replaced or truncated on every platform.
+     * </p>
+     */
+    @Override
+    public void saveAll(TaskData data) throws IOException {
+        List<Task> tasks = new ArrayList<>(data.values());
+        int capacity = Math.max(MIN_SLOTS, tasks.size() * 2);
+        byte[][] descriptions = new byte[tasks.size()][];
+        long heapSize = 0;
+        int index = 0;
+        for (Task task : tasks) {
+            descriptions[index] = encode(task.getDescription());
+            heapSize += descriptions[index++].length;
+        }
+        long dataSize = (long) capacity * SLOT_SIZE + Math.max(MIN_HEAP, heapSize * 2);
+
+        try (StoreLock lock = StoreLock.acquire(filePath)) {
+            long previousGeneration = 0;
+            long start = HEADER_SIZE;
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() >= HEADER_SIZE) {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                    if (buffer.getInt(0) == MAGIC) {
+                        Layout current = Layout.of(buffer);
+                        previousGeneration = buffer.getLong(GENERATION);
+                        start = HEADER_SIZE + dataSize <= current.dataStart() ? HEADER_SIZE : current.dataEnd();
+                    }
+                }
+                if (start + dataSize > Integer.MAX_VALUE) {
+                    throw new IOException("Task store exceeds the 2 GB mapping limit: "
+                            + (start + dataSize) + " bytes");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(start + dataSize, channel.size()));
+            }
+
+            long expected = expectedGeneration();
+            if (expected != -1 && previousGeneration != expected) {
+                throw new ConcurrentUpdateException(filePath,
+                        "expected generation " + expected + ", found " + previousGeneration);
+            }
+            writeAll(tasks, data.getSequence().peek(), capacity, descriptions, previousGeneration,
+                    (int) start, (int) (start + dataSize));
+        }
+    }
+
+    /**
+     * Writes the slots and heap at {@code start} and forces them, then
+     * points the header at them and forces it.
+     */
+    private void writeAll(List<Task> tasks, int nextId, int capacity, byte[][] descriptions, long previousGeneration,
+                          int start, int end) {
+        int heapStart = start + capacity * SLOT_SIZE;
+        int heapEnd = 0;
+        slotsById.clear();
+        int i = 0;
+        for (Task task : tasks) {
+            int position = start + i * SLOT_SIZE;
+            buffer.putInt(position + SLOT_ID, task.getId());
+            buffer.put(position + SLOT_STATUS, (byte) task.getStatus().ordinal());
+            buffer.putLong(position + SLOT_CREATED, toMillis(task.getCreatedAt()));
+            buffer.putLong(position + SLOT_UPDATED, toMillis(task.getUpdatedAt()));
+            buffer.putInt(position + SLOT_DESCRIPTION, heapEnd);
+            buffer.putInt(position + SLOT_LENGTH, task.getDescription() == null ? -1 : descriptions[i].length);
+            buffer.put(heapStart + heapEnd, descriptions[i]);
+            heapEnd += descriptions[i].length;
+            slotsById.put(task.getId(), i++);
+        }
+        buffer.force(start, heapStart + heapEnd - start);
+
+        generation = Math.max(previousGeneration, generation);
+        beginWrite();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(NEXT_ID, nextId);
+        header.putInt(CAPACITY, capacity);
+        header.putInt(SLOT_COUNT, i);
+        header.putInt(LIVE_COUNT, i);
+        header.putInt(HEAP_END, heapEnd);
+        header.putLong(GENERATION, generation);
+        header.putInt(DATA_START, start);
+        header.putInt(DATA_END, end);
+        buffer.put(0, header.array());
+        commit(0, HEADER_SIZE);
+        io.written(HEADER_SIZE + (long) i * SLOT_SIZE + heapEnd);
+    }
+
+    /**
+     * Counts the bytes of the header, slots and heap that were decoded or
+     * changed, not the whole pages the operating system moves.
+     */
+    @Override
+    public IoCounters getIoCounters() {
+        return io;
+    }
+
+    /**
+     * Compares the generation counter in the header, bumped by every write,
+     * with the one seen by this store. The mapping is shared, so writes made
+     * by other processes show up in it directly.
+     */
+    @Override
+    public boolean isModified() {
+        MappedByteBuffer mapped = buffer;
+        Snapshot current = snapshot;
+        ByteBuffer header = mapped != null ? mapped : current == null ? null : current.layout().buffer();
+        return header == null || !Files.exists(filePath) || header.getLong(GENERATION) != expectedGeneration();
+    }
+
+    /**
+     * @return the generation this store last loaded or wrote, or -1 if it has
+     *         done neither
+     */
+    private long expectedGeneration() {
+        return Math.max(generation, loadedGeneration.get());
+    }
+
+    /**
+     * Brings the write mapping and slot index up to date, and makes sure no
+     * other process wrote the file since this store last loaded or wrote it.
+     * Called with the store lock held.
+     *
+     * @return {@code false} if the file does not exist yet
+     *
+     * @throws ConcurrentUpdateException if the generation counter moved
+     * @throws IOException               if the file cannot be mapped or is not a task store
+     */
+    private boolean prepareWrite() throws IOException {
+        long expected = expectedGeneration();
+        if ((buffer == null || buffer.getLong(GENERATION) != generation) && !map()) {
+            return false;
+        }
+        if (expected != -1 && generation != expected) {
+            throw new ConcurrentUpdateException(filePath, "expected generation " + expected + ", found " + generation);
+        }
+        return true;
+    }
+
+    /**
+     * Maps the existing file for writing and indexes its slots by task ID,
+     * reading only the IDs. Called with the store lock held.
+     *
+     * @return {@code false} if the file does not exist yet
+     *
+     * @throws IOException if the file cannot be mapped or is not a task store
+     */
+    private boolean map() throws IOException {
+        slotsById.clear();
+        if (!Files.exists(filePath)) {
+            buffer = null;
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        try {
+            generation = index(buffer, slotsById, true).generation();
+            return true;
+        } catch (InconsistentReadException e) {
+            buffer = null;
+            slotsById.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the published snapshot if it is still current, or maps the file
+     * and indexes it into a new one, published once complete.
+     *
+     * @param locked {@code true} if the caller holds the store lock
+     *
+     * @return the snapshot to read, or {@code null} if the file does not exist yet
+     *
+     * @throws IOException if the file cannot be mapped or is not a task store
+     */
+    private Snapshot snapshot(boolean locked) throws IOException {
+        Snapshot current = snapshot;
+        if (current != null && current.layout().buffer().getLong(GENERATION) == current.generation()
+                && Files.exists(filePath)) {
+            return current;
+        }
+        if (!Files.exists(filePath)) {
+            return null;
+        }
+
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Snapshot fresh = index(mapped, new HashMap<>(), locked);
+        snapshot = fresh;
+
+        return fresh;
+    }
+
+    /**
+     * Moves the published snapshot past a write that left every task in its
+     * slot, so readers can keep its index. Called with the store lock held.
+     *
+     * @param before generation the write started from
+     */
+    private void carrySnapshot(long before) {
+        Snapshot current = snapshot;
+        if (current != null && current.generation() == before) {
+            snapshot = new Snapshot(current.layout(), current.slots(), generation);
+        }
+    }
+
+    /**
+     * Checks the header of a fresh mapping and indexes its slots into the given map.
+     *
+     * @return the layout, index and generation read
+     */
+    private Snapshot index(MappedByteBuffer mapped, Map<Integer, Integer> slots, boolean locked)
+            throws InconsistentReadException {
+        if (mapped.capacity() < HEADER_SIZE) {
+            throw new InconsistentReadException("Not a binary task store: " + filePath);
+        }
+        long stable = beginRead(mapped, locked);
+        if (mapped.getInt(0) != MAGIC) {
+            throw new InconsistentReadException("Not a binary task store: " + filePath);
+        }
+        if (mapped.getInt(4) != VERSION && mapped.getInt(4) != 1) {
+            throw new InconsistentReadException("Unsupported binary task store version: " + filePath);
+        }
+        int slotCount = mapped.getInt(SLOT_COUNT);
+        int start = mapped.getInt(DATA_START) == 0 ? HEADER_SIZE : mapped.getInt(DATA_START);
+        int end = mapped.getInt(DATA_END) == 0 ? mapped.capacity() : mapped.getInt(DATA_END);
+        long heapStart = start + (long) mapped.getInt(CAPACITY) * SLOT_SIZE;
+        if (start < HEADER_SIZE || end > mapped.capacity() || slotCount < 0
+                || slotCount > mapped.getInt(CAPACITY) || heapStart < start || heapStart > end) {
+            throw new InconsistentReadException("Header out of bounds in " + filePath);
+        }
+
+        Layout layout = new Layout(mapped, start, (int) heapStart, end);
+        for (int slot = 0; slot < slotCount; slot++) {
+            int id = mapped.getInt(layout.slotPosition(slot) + SLOT_ID);
+            if (id != 0) {
+                slots.put(id, slot);
+            }
+        }
+        endRead(mapped, stable, locked);
+
+        return new Snapshot(layout, slots, stable);
+    }
+
+    private Task decode(Layout layout, int slot) throws InconsistentReadException {
+        ByteBuffer mapped = layout.buffer();
+        int position = layout.slotPosition(slot);
+        int status = mapped.get(position + SLOT_STATUS);
+        if (status < 0 || status >= STATUSES.length) {
+            throw new InconsistentReadException("Status " + status + " out of range in slot " + slot + " of " + filePath);
+        }
+
+        return new Task(mapped.getInt(position + SLOT_ID), readDescription(layout, slot), STATUSES[status],
+                toTime(mapped.getLong(position + SLOT_CREATED)),
+                toTime(mapped.getLong(position + SLOT_UPDATED)));
+    }
+
+    private String readDescription(Layout layout, int slot) throws InconsistentReadException {
+        ByteBuffer mapped = layout.buffer();
+        int position = layout.slotPosition(slot);
+        int length = mapped.getInt(position + SLOT_LENGTH);
+        if (length < 0) {
+            return null;
+        }
+        long offset = layout.heapStart() + (long) mapped.getInt(position + SLOT_DESCRIPTION);
+        if (offset < layout.heapStart() || offset + length > layout.dataEnd()) {
+            throw new InconsistentReadException("Description of slot " + slot + " out of bounds in " + filePath);
+        }
+        byte[] bytes = new byte[length];
+        mapped.get((int) offset, bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the bytes to the heap and forces them to disk, so the slot and
+     * header pointing at them never reach the disk first.
+     */
+    private int appendToHeap(Layout layout, byte[] bytes) {
+        int offset = buffer.getInt(HEAP_END);
+        buffer.put(layout.heapStart() + offset, bytes);
+        if (bytes.length > 0) {
+            buffer.force(layout.heapStart() + offset, bytes.length);
+        }
+        buffer.putInt(HEAP_END, offset + bytes.length);
+
+        return offset;
+    }
+
+    /**
+     * Makes the generation counter odd, telling readers that a write is in
+     * progress. Called with the store lock held, before changing slots or the header.
+     */
+    private void beginWrite() {
+        generation = generation + 1 | 1;
+        buffer.putLong(GENERATION, generation);
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Makes the generation counter even again and flushes the changed range and the header.
+     */
+    private void commit(int position, int length) {
+        VarHandle.storeStoreFence();
+        generation++;
+        buffer.putLong(GENERATION, generation);
+        buffer.force(position, length);
+        buffer.force(0, HEADER_SIZE);
+    }
+
+    /**
+     * Starts a lock-free read of the mapping.
+     *
+     * @param locked {@code true} if the caller holds the store lock, so no write can be in progress
+     *
+     * @return the generation counter to hand to {@link #endRead}
+     *
+     * @throws InconsistentReadException if a write is in progress
+     */
+    private long beginRead(ByteBuffer mapped, boolean locked) throws InconsistentReadException {
+        long stable = mapped.getLong(GENERATION);
+        VarHandle.acquireFence();
+        if ((stable & 1) != 0 && !locked) {
+            throw new InconsistentReadException("Write in progress in " + filePath);
+        }
+        return stable;
+    }
+
+    /**
+     * Makes sure the slot index of the snapshot was built from the state being read.
+     *
+     * @throws InconsistentReadException if a write completed since the slots were indexed
+     */
+    private void checkIndexed(Snapshot current, long stable) throws InconsistentReadException {
+        if (stable != current.generation()) {
+            throw new InconsistentReadException("Concurrent write to " + filePath);
+        }
+    }
+
+    /**
+     * Ends a lock-free read of the mapping.
+     *
+     * @throws InconsistentReadException if a write started or completed since {@link #beginRead}
+     */
+    private void endRead(ByteBuffer mapped, long stable, boolean locked) throws InconsistentReadException {
+        VarHandle.loadLoadFence();
+        if (!locked && mapped.getLong(GENERATION) != stable) {
+            throw new InconsistentReadException("Concurrent write to " + filePath);
+        }
+    }
+
+    /**
+     * Runs a read of the mapping without the store lock, retrying it while
+     * it races with writers, and under the lock once it lost
+     * {@value #OPTIMISTIC_READS} times.
+     */
+    private <T> T readConsistent(MappedRead<T> read) throws IOException {
+        for (int attempt = 1; attempt < OPTIMISTIC_READS; attempt++) {
+            try {
+                return read.apply(false);
+            } catch (InconsistentReadException e) {
+                Thread.yield();
+            }
+        }
+        try (StoreLock lock = StoreLock.acquire(filePath)) {
+            return read.apply(true);
+        }
+    }
+
+    private static byte[] encode(String description) {
+        return description == null ? new byte[0] : description.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? NO_TIME : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return millis == NO_TIME ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    /**
+     * Where the slots and heap of a mapping lie, as read from its header.
+     * Version 1 files leave the data start and end fields at zero.
+     *
+     * @param buffer    the mapping
+     * @param dataStart offset of the first slot
+     * @param heapStart offset of the string heap
+     * @param dataEnd   offset past the end of the heap
+     */
+    private record Layout(ByteBuffer buffer, int dataStart, int heapStart, int dataEnd) {
+
+        static Layout of(ByteBuffer buffer) {
+            int start = buffer.getInt(DATA_START) == 0 ? HEADER_SIZE : buffer.getInt(DATA_START);
+            int end = buffer.getInt(DATA_END) == 0 ? buffer.capacity() : buffer.getInt(DATA_END);
+            return new Layout(buffer, start, start + buffer.getInt(CAPACITY) * SLOT_SIZE, end);
+        }
+
+        int slotPosition(int slot) {
+            return dataStart + slot * SLOT_SIZE;
+        }
+
+    }
+
+    /**
+     * A mapping indexed by a reader, never changed once published.
+     *
+     * @param layout     the mapping and where its data lies
+     * @param slots      slot of every task ID
+     * @param generation generation counter the slots were indexed at
+     */
+    private record Snapshot(Layout layout, Map<Integer, Integer> slots, long generation) {
+    }
+
+    /**
+     * A read of the mapping, run with or without the store lock.
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    private interface MappedRead<T> {
+
+        /**
+         * @param locked {@code true} if the store lock is held
+         *
+         * @return the result of the read
+         *
+         * @throws IOException if the file cannot be mapped, or the read saw a
+         *                     write in progress or out-of-bounds data
+         */
+        T apply(boolean locked) throws IOException;
+
+    }
+
+    /**
+     * Signals that the mapping held data a reader cannot use: a write was in
+     * progress, or a value is out of bounds. Without the lock the read is
+     * retried; with it, the file is corrupt.
+     */
+    private static final class InconsistentReadException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        InconsistentReadException(String message) {
+            super(message);
+        }
+
+    }
+
+}
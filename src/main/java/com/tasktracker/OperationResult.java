@@ -0,0 +1,28 @@
+package com.tasktracker;
+
+/**
+ * Outcome of one {@link TaskOperation} applied in a batch.
+ *
+ * @param operation the applied operation
+ * @param success   {@code false} if the task to change does not exist
+ * @param id        ID of the affected task; the generated ID for {@link TaskOperation.Type#ADD}
+ */
+public record OperationResult(TaskOperation operation, boolean success, int id) {
+
+    /**
+     * @return a message matching the one the CLI prints for the single command
+     */
+    public String message() {
+        if (!success) {
+            return "Task not found.";
+        }
+        return switch (operation.type()) {
+            case ADD -> "Task added successfully (ID: " + id + ")";
+            case UPDATE -> "Task updated.";
+            case DELETE -> "Task deleted.";
+            case MARK_IN_PROGRESS -> "Task marked as in progress.";
+            case MARK_DONE -> "Task marked as done.";
+        };
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.tasktracker;
+
+/**
+ * Enumeration of the strategies {@link TaskRepository} uses to keep its
+ * in-memory tasks in sync with the store.
+ */
+public enum ReloadPolicy {
+    /**
+     * Reload the store before every operation.
+     */
+    ALWAYS,
+    /**
+     * Load the store once and reload it only when its files were changed
+     * by someone else, as detected by {@link TaskStore#isModified()}.
+     */
+    ON_CHANGE
+}
@@ -0,0 +1,246 @@
+package com.tasktracker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inverted index from description tokens to task IDs.
+ * <p>
+ * Descriptions are split into lower-case runs of letters and digits. Tokens
+ * are kept in a sorted map, so every token starting with a prefix is found
+ * with a single range lookup. A query is a list of terms that must all
+ * match; a term ending with {@code *} matches every token it is a prefix of,
+ * any other term matches one token exactly. Matching tasks are intersected
+ * starting from the smallest posting set, so a query costs about the size of
+ * its most selective term.
+ * </p>
+ * <p>
+ * The index is safe to read while it is being updated. Updates for the same
+ * task must be serialized by the caller. Posting sets left empty by removals
+ * are kept, so a concurrent addition to the same token is never lost; they
+ * are dropped when the index is saved.
+ * </p>
+ */
+public class SearchIndex {
+
+    private static final int MAGIC = 0x54534958;
+
+    private final ConcurrentSkipListMap<String, Set<Integer>> postings = new ConcurrentSkipListMap<>();
+
+    private SearchIndex() {
+    }
+
+    /**
+     * Indexes every task.
+     *
+     * @param tasks tasks to index
+     * @return the index
+     */
+    public static SearchIndex build(Collection<Task> tasks) {
+        SearchIndex index = new SearchIndex();
+        for (Task task : tasks) {
+            index.add(task.getId(), task.getDescription());
+        }
+        return index;
+    }
+
+    /**
+     * Reads an index written by {@link #save(Path, Collection)}, provided it
+     * was built from the same tasks.
+     *
+     * @param path  index file
+     * @param tasks tasks the index must describe
+     * @return the index, or {@code null} if the file is missing, unreadable or out of date
+     */
+    public static SearchIndex load(Path path, Collection<Task> tasks) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readLong() != fingerprint(tasks)) {
+                return null;
+            }
+            SearchIndex index = new SearchIndex();
+            int tokens = in.readInt();
+            for (int i = 0; i < tokens; i++) {
+                String token = in.readUTF();
+                int count = in.readInt();
+                Set<Integer> ids = ConcurrentHashMap.newKeySet(count);
+                for (; count > 0; count--) {
+                    ids.add(in.readInt());
+                }
+                index.postings.put(token, ids);
+            }
+            return index;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index next to the data it describes. The file is tagged
+     * with a fingerprint of the tasks, so a stale index is never loaded.
+     *
+     * @param path  index file
+     * @param tasks tasks the index describes
+     * @throws IOException if writing fails
+     */
+    public void save(Path path, Collection<Task> tasks) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(fingerprint(tasks));
+            List<Map.Entry<String, int[]>> entries = new ArrayList<>();
+            for (Map.Entry<String, Set<Integer>> entry : postings.entrySet()) {
+                int[] ids = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+                if (ids.length > 0) {
+                    entries.add(Map.entry(entry.getKey(), ids));
+                }
+            }
+            out.writeInt(entries.size());
+            for (Map.Entry<String, int[]> entry : entries) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (int id : entry.getValue()) {
+                    out.writeInt(id);
+                }
+            }
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Indexes the description of a task.
+     *
+     * @param id          task ID
+     * @param description task description
+     */
+    public void add(int id, String description) {
+        for (String token : tokenize(description)) {
+            postings.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet(1)).add(id);
+        }
+    }
+
+    /**
+     * Removes the description of a task from the index.
+     *
+     * @param id          task ID
+     * @param description description the task was indexed with
+     */
+    public void remove(int id, String description) {
+        for (String token : tokenize(description)) {
+            Set<Integer> ids = postings.get(token);
+            if (ids != null) {
+                ids.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Finds the tasks matching every term of a query.
+     *
+     * @param query terms separated by spaces; a trailing {@code *} makes a term a prefix
+     * @return IDs of the matching tasks in ascending order
+     */
+    public int[] search(String query) {
+        List<Set<Integer>> terms = new ArrayList<>();
+        for (String term : query.trim().split("\\s+")) {
+            boolean prefix = term.endsWith("*");
+            List<String> tokens = tokenize(prefix ? term.substring(0, term.length() - 1) : term);
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean last = i == tokens.size() - 1;
+                terms.add(prefix && last ? matchPrefix(tokens.get(i)) : postings.getOrDefault(tokens.get(i), Set.of()));
+            }
+        }
+        if (terms.isEmpty()) {
+            return new int[0];
+        }
+
+        terms.sort(Comparator.comparingInt(Set::size));
+        int[] matches = new int[Math.max(terms.get(0).size(), 16)];
+        int count = 0;
+        candidates:
+        for (int id : terms.get(0)) {
+            for (int i = 1; i < terms.size(); i++) {
+                if (!terms.get(i).contains(id)) {
+                    continue candidates;
+                }
+            }
+            if (count == matches.length) {
+                matches = Arrays.copyOf(matches, count * 2);
+            }
+            matches[count++] = id;
+        }
+        matches = Arrays.copyOf(matches, count);
+        Arrays.sort(matches);
+        return matches;
+    }
+
+    private Set<Integer> matchPrefix(String prefix) {
+        Collection<Set<Integer>> range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+        Set<Integer> ids = new HashSet<>();
+        for (Set<Integer> posting : range) {
+            ids.addAll(posting);
+        }
+        return ids;
+    }
+
+    /**
+     * Splits text into lower-case runs of letters and digits.
+     *
+     * @param text text to split
+     * @return tokens in order of appearance, duplicates included
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Order-independent digest of the indexed content of the tasks.
+     */
+    private static long fingerprint(Collection<Task> tasks) {
+        long sum = tasks.size();
+        for (Task task : tasks) {
+            long mixed = (long) task.getId() * 0x9E3779B97F4A7C15L + Objects.hashCode(task.getDescription());
+            mixed ^= mixed >>> 31;
+            sum += mixed * 0xBF58476D1CE4E5B9L;
+        }
+        return sum;
+    }
+
+}
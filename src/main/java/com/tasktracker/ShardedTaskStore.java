@@ -0,0 +1,326 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link TaskStore} partitioning tasks by ID over several JSON files.
+ * <p>
+ * Task {@code id} lives in shard {@code id mod n}, so consecutive IDs are
+ * spread evenly. Shard {@code i} of {@code tasks.json} is stored in
+ * {@code tasks.i.json}, a file in the format of {@link JsonTaskStore} with
+ * its own lock and generation. Shards are loaded in parallel on the common
+ * {@link ForkJoinPool} straight into one {@link TaskData}, sized up front
+ * from the task counts in the shard headers, and a change only
+ * rewrites the shards holding the changed tasks. The store keeps the IDs of
+ * each shard in a bit set, so a single-task write visits and writes the
+ * tasks of one shard only.
+ * </p>
+ * <p>
+ * A write locks the shards it touches in ascending order and checks all of
+ * their generations before rewriting any, so a conflict with another
+ * process leaves the files untouched. Each shard file is replaced
+ * atomically, but a crash in the middle of a change spanning several
+ * shards may leave only some of them written.
+ * </p>
+ * <p>
+ * Files left by a store with more shards are still loaded; tasks found in
+ * the wrong shard cause the next write to rewrite every shard with the
+ * current layout and delete the extra files.
+ * </p>
+ */
+public final class ShardedTaskStore implements TaskStore {
+
+    /**
+     * Number of shards used when none is configured.
+     */
+    public static final int DEFAULT_SHARD_COUNT = 16;
+
+    private final Path basePath;
+
+    private final int shardCount;
+
+    private final IoCounters io = new IoCounters();
+
+    private final List<JsonTaskStore> shards = new CopyOnWriteArrayList<>();
+
+    private final BitSet[] members;
+
+    private boolean indexed;
+
+    private boolean misplaced;
+
+    /**
+     * Creates a store spreading tasks over the given number of files.
+     *
+     * @param basePath   name the shard file names are derived from, such as {@code tasks.json}
+     * @param shardCount number of shard files
+     */
+    public ShardedTaskStore(Path basePath, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        this.basePath = basePath;
+        this.shardCount = shardCount;
+        members = new BitSet[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new JsonTaskStore(shardPath(i), io));
+            members[i] = new BitSet();
+        }
+    }
+
+    /**
+     * @param index shard number
+     * @return the file holding that shard
+     */
+    public Path shardPath(int index) {
+        String name = basePath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String shardName = dot > 0
+                ? name.substring(0, dot) + "." + index + name.substring(dot)
+                : name + "." + index;
+        return basePath.resolveSibling(shardName);
+    }
+
+    @Override
+    public IoCounters getIoCounters() {
+        return io;
+    }
+
+    @Override
+    public synchronized TaskData load() throws IOException {
+        while (Files.exists(shardPath(shards.size()))) {
+            shards.add(new JsonTaskStore(shardPath(shards.size()), io));
+        }
+
+        indexed = false;
+        int[] sizes = new int[shards.size()];
+        List<ForkJoinTask<?>> headers = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            headers.add(action(() -> sizes[shard] = shards.get(shard).readSize()));
+        }
+        invokeAll(headers);
+        TaskData data = new TaskData(Arrays.stream(sizes).sum(), 1);
+        AtomicBoolean foundMisplaced = new AtomicBoolean();
+        List<ForkJoinTask<?>> loads = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            BitSet shardMembers = shard < shardCount ? new BitSet() : null;
+            if (shardMembers != null) {
+                members[shard] = shardMembers;
+            }
+            loads.add(action(() -> {
+                int nextId = shards.get(shard).loadInto(task -> {
+                    if (shardOf(task.getId()) != shard) {
+                        foundMisplaced.set(true);
+                    } else {
+                        shardMembers.set(slotOf(task.getId()));
+                    }
+                    data.put(task);
+                });
+                data.getSequence().advancePast(nextId - 1);
+            }));
+        }
+        invokeAll(loads);
+        misplaced = foundMisplaced.get();
+        indexed = true;
+
+        return data;
+    }
+
+    @Override
+    public synchronized void save(Task task, TaskData data) throws IOException {
+        write(List.of(task.getId()), data);
+    }
+
+    @Override
+    public synchronized void delete(int id, TaskData data) throws IOException {
+        write(List.of(id), data);
+    }
+
+    @Override
+    public synchronized void saveChanges(Collection<Task> saved, Collection<Integer> deleted, TaskData data)
+            throws IOException {
+        List<Integer> ids = new ArrayList<>(deleted);
+        for (Task task : saved) {
+            ids.add(task.getId());
+        }
+        write(ids, data);
+    }
+
+    /**
+     * Rewrites every shard, rebuilding the shard members from the given tasks.
+     */
+    @Override
+    public synchronized void saveAll(TaskData data) throws IOException {
+        for (int i = 0; i < shardCount; i++) {
+            members[i] = new BitSet();
+        }
+        for (Task task : data.values()) {
+            members[shardOf(task.getId())].set(slotOf(task.getId()));
+        }
+        indexed = true;
+
+        List<Integer> all = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            all.add(i);
+        }
+        writeShards(all, data);
+    }
+
+    @Override
+    public boolean isModified() throws IOException {
+        for (JsonTaskStore shard : shards) {
+            if (shard.isModified()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records whether the given tasks still exist and rewrites the shards
+     * holding them, or every shard if the layout needs to be repaired or the
+     * store has not seen the tasks yet.
+     */
+    private void write(Collection<Integer> ids, TaskData data) throws IOException {
+        if (!indexed || misplaced || shards.size() > shardCount) {
+            saveAll(data);
+            return;
+        }
+        TreeSet<Integer> touched = new TreeSet<>();
+        for (int id : ids) {
+            touched.add(shardOf(id));
+            members[shardOf(id)].set(slotOf(id), data.contains(id));
+        }
+        writeShards(touched, data);
+    }
+
+    /**
+     * Locks the given shards in ascending order, checks that no other process
+     * wrote them, then rewrites them in parallel. Once every shard is written
+     * with the current layout, files of former extra shards are deleted.
+     *
+     * @param touched shard numbers in ascending order
+     */
+    private void writeShards(Collection<Integer> touched, TaskData data) throws IOException {
+        boolean repairing = touched.size() == shardCount && (misplaced || shards.size() > shardCount);
+        List<Integer> locked = new ArrayList<>(touched);
+        if (repairing) {
+            for (int i = shardCount; i < shards.size(); i++) {
+                locked.add(i);
+            }
+        }
+
+        List<StoreLock> locks = new ArrayList<>();
+        try {
+            long[] generations = new long[shards.size()];
+            for (int shard : locked) {
+                locks.add(StoreLock.acquire(shardPath(shard)));
+                generations[shard] = shards.get(shard).checkGeneration();
+            }
+
+            int nextId = data.getSequence().peek();
+            List<ForkJoinTask<?>> writes = new ArrayList<>();
+            for (int shard : touched) {
+                Collection<Task> tasks = tasksOf(shard, data);
+                writes.add(action(() -> shards.get(shard).write(generations[shard], nextId, tasks.size(), tasks)));
+            }
+            invokeAll(writes);
+
+            if (repairing) {
+                for (int i = shards.size() - 1; i >= shardCount; i--) {
+                    Files.deleteIfExists(shardPath(i));
+                    shards.remove(i);
+                }
+                misplaced = false;
+            }
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).close();
+            }
+        }
+    }
+
+    /**
+     * @return the tasks of a shard in ascending ID order, found through its members
+     */
+    private List<Task> tasksOf(int shard, TaskData data) {
+        BitSet shardMembers = members[shard];
+        List<Task> tasks = new ArrayList<>(shardMembers.cardinality());
+        for (int slot = shardMembers.nextSetBit(0); slot >= 0; slot = shardMembers.nextSetBit(slot + 1)) {
+            Task task = data.get(slot * shardCount + shard);
+            if (task != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    private int shardOf(int id) {
+        return Math.floorMod(id, shardCount);
+    }
+
+    /**
+     * @return position of the task in the members of its shard
+     */
+    private int slotOf(int id) {
+        return Math.floorDiv(id, shardCount);
+    }
+
+    /**
+     * Runs the tasks on the common fork-join pool and waits for them.
+     *
+     * @throws IOException the failure of one of the tasks
+     */
+    private static void invokeAll(List<ForkJoinTask<?>> tasks) throws IOException {
+        try {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ForkJoinTask<?> action(ShardWork work) {
+        return ForkJoinTask.adapt(() -> {
+            try {
+                work.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Work on one shard.
+     */
+    @FunctionalInterface
+    private interface ShardWork {
+
+        /**
+         * @throws IOException if reading or writing the shard fails
+         */
+        void run() throws IOException;
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive cross-process lock guarding writes to a store file.
+ * <p>
+ * The lock is taken with {@link FileChannel#lock()} on a {@code .lock} file
+ * next to the data file, so readers, which never touch it, are not blocked.
+ * File locks are held per process, so threads of the same JVM are first
+ * serialized on an in-process lock; nested acquisitions by the same thread
+ * are reentrant.
+ * </p>
+ */
+final class StoreLock implements AutoCloseable {
+
+    private static final ConcurrentHashMap<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final ReentrantLock localLock;
+
+    private final FileChannel channel;
+
+    private final FileLock fileLock;
+
+    private StoreLock(ReentrantLock localLock, FileChannel channel, FileLock fileLock) {
+        this.localLock = localLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Blocks until the write lock for the given data file is held.
+     *
+     * @param dataFile file whose writes are guarded
+     * @return the held lock, released by {@link #close()}
+     * @throws IOException if the lock file cannot be opened or locked
+     */
+    static StoreLock acquire(Path dataFile) throws IOException {
+        Path lockPath = lockPath(dataFile);
+        ReentrantLock localLock = LOCAL_LOCKS.computeIfAbsent(lockPath.toAbsolutePath().normalize(),
+                path -> new ReentrantLock());
+        localLock.lock();
+        if (localLock.getHoldCount() > 1) {
+            return new StoreLock(localLock, null, null);
+        }
+
+        try {
+            FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                return new StoreLock(localLock, channel, channel.lock());
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            localLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * @param dataFile a store file
+     * @return the lock file guarding it
+     */
+    static Path lockPath(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".lock");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (fileLock != null) {
+                fileLock.release();
+                channel.close();
+            }
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+}
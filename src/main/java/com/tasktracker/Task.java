@@ -42,6 +42,23 @@ public class Task {
         updatedAt = LocalDateTime.now();
     }
 
+    /**
+     * Creates a task with every field set, as read back from storage.
+     *
+     * @param id          numeric identifier for the task
+     * @param description short description of the task
+     * @param status      current status
+     * @param createdAt   creation timestamp
+     * @param updatedAt   last update timestamp
+     */
+    public Task(int id, String description, Status status, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.description = description;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
     /**
      * @return the task ID
      */
@@ -0,0 +1,69 @@
+package com.tasktracker;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Forwards CLI commands to a running {@link TaskDaemon}.
+ * <p>
+ * A request is the number of arguments followed by every argument in
+ * modified UTF-8, as written by {@link DataOutputStream}. The response is the
+ * command output, terminated by the daemon closing the connection.
+ * </p>
+ */
+public final class TaskClient {
+
+    private TaskClient() {
+    }
+
+    /**
+     * Sends a command to the daemon listening on the given socket and copies
+     * its output to the given stream.
+     *
+     * @param socketPath path of the daemon's Unix domain socket
+     * @param args       command-line arguments, starting with the command name
+     * @param out        destination of the command output
+     *
+     * @return {@code true} if the daemon ran the command; {@code false} if no
+     * daemon is listening, in which case the command should run locally
+     *
+     * @throws IOException if the connection breaks while the command runs
+     */
+    public static boolean forward(Path socketPath, String[] args, OutputStream out) throws IOException {
+        if (!Files.exists(socketPath)) {
+            return false;
+        }
+
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            channel.close();
+            return false;
+        }
+
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            channel.shutdownOutput();
+
+            InputStream response = Channels.newInputStream(channel);
+            response.transferTo(out);
+            out.flush();
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.tasktracker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running server executing CLI commands against a warm repository.
+ * <p>
+ * The daemon listens on a Unix domain socket. Each connection carries one
+ * command, encoded by {@link TaskClient}, and receives the command's output
+ * as it is written, through a buffer, before the connection is closed. The
+ * output of {@code watch} is flushed line by line, until the client goes
+ * away or the daemon is closed. Commands that read local files or start a
+ * server are refused with an error line. Connections are served on virtual
+ * threads, so many clients can wait on the repository at once without
+ * tying up platform threads.
+ * </p>
+ * <p>
+ * The repository is shared by every connection and should use
+ * {@link ReloadPolicy#ON_CHANGE}, so commands are served from memory while
+ * changes made by other processes are still picked up.
+ * </p>
+ */
+public class TaskDaemon implements AutoCloseable {
+
+    /**
+     * Largest number of arguments a command may carry.
+     */
+    static final int MAX_ARGS = 1024;
+
+    private final Path socketPath;
+
+    private final TaskRepository repository;
+
+    private final ServerSocketChannel server;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Set<Thread> watchers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Binds the daemon to the given socket. A socket file left behind by a
+     * daemon that did not shut down cleanly, which refuses connections, is
+     * replaced.
+     *
+     * @param socketPath path of the Unix domain socket
+     * @param repository repository the commands run against
+     *
+     * @throws IOException if another daemon is listening on the socket, or it cannot be bound
+     */
+    public TaskDaemon(Path socketPath, TaskRepository repository) throws IOException {
+        this.socketPath = socketPath;
+        this.repository = repository;
+        removeStaleSocket(socketPath);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+    }
+
+    /**
+     * Removes a socket file nobody listens on any more.
+     *
+     * @throws IOException if a daemon accepts connections on it
+     */
+    private static void removeStaleSocket(Path socketPath) throws IOException {
+        if (!Files.exists(socketPath)) {
+            return;
+        }
+        try (SocketChannel probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            probe.connect(UnixDomainSocketAddress.of(socketPath));
+        } catch (ConnectException e) {
+            Files.deleteIfExists(socketPath);
+            return;
+        }
+        throw new IOException("A daemon is already serving " + socketPath);
+    }
+
+    /**
+     * Accepts connections until the daemon is closed.
+     *
+     * @throws IOException if accepting a connection fails
+     */
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            executor.execute(() -> handle(client));
+        }
+    }
+
+    /**
+     * Stops accepting connections, ends running watches, lets other running
+     * commands finish and removes the socket file.
+     */
+    @Override
+    public void close() {
+        try {
+            server.close();
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            System.out.println("IOException: " + e);
+        }
+        watchers.forEach(Thread::interrupt);
+        executor.close();
+    }
+
+    /**
+     * Reads one command from the connection, runs it and sends back its output.
+     *
+     * @param client connection to serve
+     */
+    private void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+            int count = in.readInt();
+            if (count < 1 || count > MAX_ARGS) {
+                reject(client, "invalid argument count " + count);
+                return;
+            }
+            String[] args = new String[count];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            if (!Main.isForwardable(args[0])) {
+                reject(client, "the daemon does not run \"" + args[0] + "\"; run it without a daemon");
+                return;
+            }
+
+            stream(args, client);
+        } catch (EOFException e) {
+            // The client went away before sending a whole command, as a liveness probe does.
+        } catch (IOException e) {
+            System.out.println("IOException: " + e);
+        }
+    }
+
+    /**
+     * Answers a connection whose command will not be run with an error line.
+     */
+    private static void reject(SocketChannel client, String reason) throws IOException {
+        OutputStream response = Channels.newOutputStream(client);
+        response.write(("Error: " + reason + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        response.flush();
+    }
+
+    /**
+     * Runs a command whose output is written to the connection as it is
+     * printed, so a long list is never held in memory. A {@code watch} is
+     * flushed after every line, and its thread is registered so closing the
+     * daemon can end it.
+     */
+    private void stream(String[] args, SocketChannel client) throws IOException {
+        boolean watch = args.length > 0 && args[0].equals("watch");
+        PrintStream out = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(client), 64 * 1024),
+                watch, StandardCharsets.UTF_8);
+        if (watch) {
+            watchers.add(Thread.currentThread());
+        }
+        try {
+            Main.run(args, new TaskService(repository, out), out);
+        } catch (RuntimeException e) {
+            out.println("Error: " + e);
+        } finally {
+            watchers.remove(Thread.currentThread());
+            out.flush();
+        }
+    }
+
+}
@@ -0,0 +1,491 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory state of a task store: the tasks keyed by ID, ordered indexes
+ * of all task IDs and of task IDs by status, and the sequence used to
+ * allocate new IDs.
+ * <p>
+ * Tasks are held in columnar form by a {@link TaskTable}. Every read returns
+ * a new {@link Task} holding a copy of the stored fields, so changing that
+ * object has no effect until it is handed back through one of the methods
+ * below.
+ * </p>
+ * <p>
+ * The indexes are {@link IdSet} bitsets, so tasks are iterated in ascending
+ * ID order, a page starting after a given ID is found in logarithmic time,
+ * and no ID is boxed.
+ * </p>
+ * <p>
+ * All changes must go through {@link #put(Task)}, {@link #remove(int)},
+ * {@link #setStatus(Task, Status)} and {@link #setDescription(Task, String)}
+ * so the indexes stay in sync. The full-text {@link SearchIndex} and the
+ * {@link TimeIndex} are only maintained once they have been attached with
+ * {@link #setSearchIndex} and {@link #setTimeIndex}.
+ * Both the tasks and the indexes are concurrent structures: they can be read
+ * while other threads change them, and changes to different tasks may run
+ * in parallel. Changes to the same task must be serialized by the caller.
+ * </p>
+ */
+public class TaskData {
+
+    private final TaskTable tasks;
+
+    private final IdSet ids = new IdSet();
+
+    private final EnumMap<Status, IdSet> statusIndex = new EnumMap<>(Status.class);
+
+    private final EnumMap<Status, AtomicInteger> statusCounts = new EnumMap<>(Status.class);
+
+    private final IdSequence sequence;
+
+    private volatile SearchIndex searchIndex;
+
+    private volatile TimeIndex timeIndex;
+
+    /**
+     * Creates an empty state whose first ID is 1.
+     */
+    public TaskData() {
+        this(0, 1);
+    }
+
+    /**
+     * Creates an empty state sized for the given number of tasks.
+     *
+     * @param expectedSize number of tasks about to be added
+     * @param nextId       persisted next ID
+     */
+    public TaskData(int expectedSize, int nextId) {
+        this(expectedSize, nextId, null);
+    }
+
+    /**
+     * Creates an empty state sized for the given number of tasks, whose
+     * descriptions are kept in a file rather than in memory.
+     *
+     * @param expectedSize    number of tasks about to be added
+     * @param nextId          persisted next ID
+     * @param descriptionFile file holding the descriptions, or {@code null} to keep them in memory
+     */
+    TaskData(int expectedSize, int nextId, DescriptionFile descriptionFile) {
+        this.tasks = new TaskTable(expectedSize, descriptionFile);
+        this.sequence = new IdSequence(nextId);
+        for (Status status : Status.values()) {
+            statusIndex.put(status, new IdSet());
+            statusCounts.put(status, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Creates a state from loaded tasks.
+     * <p>
+     * The sequence never starts below the highest loaded ID + 1, which also
+     * covers files written before the next ID was persisted.
+     * </p>
+     *
+     * @param tasks  tasks keyed by ID; they are copied
+     * @param nextId persisted next ID
+     */
+    public TaskData(Map<Integer, Task> tasks, int nextId) {
+        this(tasks.size(), nextId);
+        for (Task task : tasks.values()) {
+            put(task);
+        }
+    }
+
+    /**
+     * Visits the stored fields of every task without reading spilled
+     * descriptions; see {@link TaskTable#forEachRow}.
+     *
+     * @param visitor receives every row
+     * @throws IOException if the visitor fails
+     */
+    void forEachRow(TaskTable.RowVisitor visitor) throws IOException {
+        tasks.forEachRow(visitor);
+    }
+
+    /**
+     * Visits the stored fields of one task; see {@link TaskTable#visitRow}.
+     *
+     * @param id      task ID
+     * @param visitor receives the row
+     * @return {@code false} if there is no task with this ID
+     * @throws IOException if the visitor fails
+     */
+    boolean visitRow(int id, TaskTable.RowVisitor visitor) throws IOException {
+        return tasks.visitRow(id, visitor);
+    }
+
+    /**
+     * @return total length of the descriptions held in the description file rather than in memory
+     */
+    long getStoredDescriptionBytes() {
+        return tasks.storedDescriptionBytes();
+    }
+
+    /**
+     * @return the file spilled descriptions are read from, or {@code null} if every description is in memory
+     */
+    DescriptionFile getDescriptionFile() {
+        return tasks.getDescriptionFile();
+    }
+
+    /**
+     * Drops a description written to the description file from memory; see
+     * {@link TaskTable#spill}.
+     *
+     * @param id             task ID
+     * @param description    the description as visited
+     * @param descriptionRef where it was written
+     */
+    void spill(int id, String description, long descriptionRef) {
+        tasks.spill(id, description, descriptionRef);
+    }
+
+    /**
+     * @return the ID sequence
+     */
+    public IdSequence getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @param id task ID
+     * @return a copy of the task, or {@code null} if there is none with this ID
+     */
+    public Task get(int id) {
+        return tasks.get(id);
+    }
+
+    /**
+     * @param id task ID
+     * @return {@code true} if a task with this ID exists
+     */
+    public boolean contains(int id) {
+        return tasks.contains(id);
+    }
+
+    /**
+     * @return number of tasks
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * @return {@code true} if there are no tasks
+     */
+    public boolean isEmpty() {
+        return tasks.size() == 0;
+    }
+
+    /**
+     * Adds a task, replacing any task with the same ID.
+     *
+     * @param task task to add; it is copied
+     */
+    public void put(Task task) {
+        put(task, TaskTable.NO_REF);
+    }
+
+    /**
+     * Adds a task whose description stays in the description file, as read
+     * back by a store, replacing any task with the same ID.
+     * <p>
+     * Like {@link #removeStored}, this is only called while a store loads
+     * the state, before the search and time indexes are built.
+     * </p>
+     *
+     * @param task           task to add, without its description
+     * @param descriptionRef location of the description in the file
+     */
+    void putStored(Task task, long descriptionRef) {
+        removeStored(task.getId());
+        put(task, descriptionRef);
+    }
+
+    /**
+     * Removes a task read back by a store without reading its description.
+     * Only called while a store loads the state, before the search and time
+     * indexes are built.
+     *
+     * @param id task ID
+     */
+    void removeStored(int id) {
+        Status removed = tasks.removeStored(id);
+        if (removed != null) {
+            ids.remove(id);
+            unindex(removed, id);
+        }
+    }
+
+    private void put(Task task, long descriptionRef) {
+        Task previous = descriptionRef == TaskTable.NO_REF ? tasks.put(task) : tasks.put(task, descriptionRef);
+        SearchIndex search = searchIndex;
+        TimeIndex times = timeIndex;
+        if (previous != null) {
+            unindex(previous.getStatus(), previous.getId());
+            if (search != null) {
+                search.remove(previous.getId(), previous.getDescription());
+            }
+            if (times != null) {
+                times.remove(previous);
+            }
+        }
+        ids.add(task.getId());
+        index(task.getStatus(), task.getId());
+        if (search != null) {
+            search.add(task.getId(), task.getDescription());
+        }
+        if (times != null) {
+            times.add(task);
+        }
+        sequence.advancePast(task.getId());
+    }
+
+    /**
+     * Removes a task.
+     *
+     * @param id task ID
+     * @return the removed task, or {@code null} if there was none
+     */
+    public Task remove(int id) {
+        Task removed = tasks.remove(id);
+        if (removed != null) {
+            ids.remove(id);
+            unindex(removed.getStatus(), id);
+            SearchIndex search = searchIndex;
+            if (search != null) {
+                search.remove(id, removed.getDescription());
+            }
+            TimeIndex times = timeIndex;
+            if (times != null) {
+                times.remove(removed);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Changes the status of a stored task, writes it back and moves it in
+     * the status and time indexes.
+     *
+     * @param task   a task read from this state; it is changed as well
+     * @param status new status
+     */
+    public void setStatus(Task task, Status status) {
+        TimeIndex times = timeIndex;
+        if (times != null) {
+            times.removeUpdated(task);
+        }
+        unindex(task.getStatus(), task.getId());
+        task.setStatus(status);
+        tasks.updateStatus(task);
+        index(status, task.getId());
+        if (times != null) {
+            times.addUpdated(task);
+        }
+    }
+
+    /**
+     * Changes the description of a stored task, writes it back and
+     * reindexes it for search and by update time.
+     *
+     * @param task        a task read from this state; it is changed as well
+     * @param description new description
+     */
+    public void setDescription(Task task, String description) {
+        SearchIndex search = searchIndex;
+        TimeIndex times = timeIndex;
+        if (search != null) {
+            search.remove(task.getId(), task.getDescription());
+        }
+        if (times != null) {
+            times.removeUpdated(task);
+        }
+        task.setDescription(description);
+        tasks.update(task);
+        if (search != null) {
+            search.add(task.getId(), description);
+        }
+        if (times != null) {
+            times.addUpdated(task);
+        }
+    }
+
+    /**
+     * @return the attached full-text index, or {@code null} if none was attached yet
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Attaches a full-text index describing the current tasks; it is kept
+     * up to date by every later change. No change may run concurrently.
+     *
+     * @param searchIndex index built from or validated against {@link #values()}
+     */
+    public void setSearchIndex(SearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * @return the attached time index, or {@code null} if none was attached yet
+     */
+    public TimeIndex getTimeIndex() {
+        return timeIndex;
+    }
+
+    /**
+     * Attaches a time index describing the current tasks; it is kept up to
+     * date by every later change. No change may run concurrently.
+     *
+     * @param timeIndex index built from {@link #values()}
+     */
+    public void setTimeIndex(TimeIndex timeIndex) {
+        this.timeIndex = timeIndex;
+    }
+
+    /**
+     * @return every task, in storage order; each one is read as it is reached
+     */
+    public Collection<Task> values() {
+        return tasks.values();
+    }
+
+    /**
+     * Selects tasks by ID without building the others.
+     *
+     * @param filter test applied to the task IDs
+     * @return the selected tasks, in storage order; each one is read as it is reached
+     */
+    public Collection<Task> select(IntPredicate filter) {
+        return tasks.select(filter);
+    }
+
+    /**
+     * Looks up the tasks with the given status through the status index.
+     *
+     * @param status status filter
+     * @return matching tasks in ascending ID order
+     */
+    public List<Task> byStatus(Status status) {
+        List<Task> matching = new ArrayList<>(count(status));
+        TaskIterator iterator = new TaskIterator(statusIndex.get(status).iterator(Integer.MIN_VALUE));
+        while (iterator.hasNext()) {
+            matching.add(iterator.next());
+        }
+        return matching;
+    }
+
+    /**
+     * Iterates over the tasks with the given status without copying them.
+     *
+     * @param status status filter, or {@code null} for every task
+     * @return matching tasks in ascending ID order
+     */
+    public Iterable<Task> iterate(Status status) {
+        return iterate(status, 0);
+    }
+
+    /**
+     * Iterates over the tasks with the given status whose ID is above a
+     * cursor, without copying them. Finding the first task takes
+     * logarithmic time.
+     *
+     * @param status  status filter, or {@code null} for every task
+     * @param afterId only tasks with a greater ID are returned; 0 starts from the beginning
+     * @return matching tasks in ascending ID order
+     */
+    public Iterable<Task> iterate(Status status, int afterId) {
+        IdSet index = status == null ? ids : statusIndex.get(status);
+        return () -> new TaskIterator(index.iterator(afterId));
+    }
+
+    /**
+     * Collects one page of tasks above a cursor.
+     *
+     * @param status  status filter, or {@code null} for every task
+     * @param afterId only tasks with a greater ID are returned; 0 starts from the beginning
+     * @param limit   maximum number of tasks returned
+     * @return matching tasks in ascending ID order
+     */
+    public List<Task> page(Status status, int afterId, int limit) {
+        List<Task> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Task task : iterate(status, afterId)) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(task);
+        }
+        return page;
+    }
+
+    /**
+     * @param status status filter
+     * @return number of tasks with the given status
+     */
+    public int count(Status status) {
+        return statusCounts.get(status).get();
+    }
+
+    private void index(Status status, int id) {
+        if (statusIndex.get(status).add(id)) {
+            statusCounts.get(status).incrementAndGet();
+        }
+    }
+
+    private void unindex(Status status, int id) {
+        if (statusIndex.get(status).remove(id)) {
+            statusCounts.get(status).decrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the tasks of an ID index as they are reached, skipping IDs
+     * whose task was removed meanwhile.
+     */
+    private final class TaskIterator implements Iterator<Task> {
+
+        private final PrimitiveIterator.OfInt ids;
+
+        private Task next;
+
+        TaskIterator(PrimitiveIterator.OfInt ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && ids.hasNext()) {
+                next = tasks.get(ids.nextInt());
+            }
+            return next != null;
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Task task = next;
+            next = null;
+            return task;
+        }
+
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.tasktracker;
+
+/**
+ * A change made to a task, as published by {@link ChangeFeed}.
+ *
+ * @param sequence position of the change in the feed, starting at 1 and increasing by 1
+ * @param type     kind of change
+ * @param id       ID of the changed task
+ * @param task     the task after the change; for a deletion, the task as it was when deleted
+ */
+public record TaskEvent(long sequence, Type type, int id, Task task) {
+
+    /**
+     * Kinds of change.
+     */
+    public enum Type {
+        CREATED, UPDATED, STATUS_CHANGED, DELETED
+    }
+
+}
@@ -0,0 +1,334 @@
+package com.tasktracker;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP server exposing the repository as a JSON API.
+ * <p>
+ * Every request runs on its own virtual thread. The endpoints are:
+ * </p>
+ * <ul>
+ *     <li>{@code GET /tasks?status=&after=&limit=}: one page of tasks in ascending ID order;
+ *     the {@code X-Next-After} header carries the cursor of the next page, if any</li>
+ *     <li>{@code POST /tasks} with {@code {"description": "..."}}: adds a task</li>
+ *     <li>{@code PUT /tasks/{id}} with {@code {"description": "..."}}: updates a task</li>
+ *     <li>{@code DELETE /tasks/{id}}: deletes a task</li>
+ *     <li>{@code POST /tasks/{id}/in-progress} and {@code POST /tasks/{id}/done}: change the status</li>
+ *     <li>{@code GET /tasks/count}: number of tasks per status</li>
+ *     <li>{@code GET /tasks/search?q=&limit=}: tasks matching every term of the query, in ascending ID order</li>
+ *     <li>{@code POST /tasks/batch} with one CLI command per line: applies them as a batch</li>
+ * </ul>
+ * <p>
+ * Lists are streamed to the client through a {@link JsonGenerator} with
+ * chunked transfer encoding. Like the daemon, the server should be given a
+ * repository using {@link ReloadPolicy#ON_CHANGE}. Launchers should call
+ * {@link #enableNoDelay()} first.
+ * </p>
+ */
+public class TaskHttpServer implements AutoCloseable {
+
+    /**
+     * Page size used when the request does not give one.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Largest page size a request may ask for.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final ObjectMapper mapper = TaskMapper.create();
+
+    private final ObjectWriter writer = mapper.writer()
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private final TaskRepository repository;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Creates a server bound to the given address. It does not accept
+     * requests until {@link #start()} is called.
+     *
+     * @param address    address to listen on; port 0 picks a free port
+     * @param repository repository the requests run against
+     *
+     * @throws IOException if the address cannot be bound
+     */
+    public TaskHttpServer(InetSocketAddress address, TaskRepository repository) throws IOException {
+        this.repository = repository;
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/tasks", this::handle);
+    }
+
+    /**
+     * Disables Nagle's algorithm on the connections of every server in this
+     * JVM, unless {@code sun.net.httpserver.nodelay} was set on the command
+     * line; small responses otherwise wait for the client's delayed ACK.
+     * The JDK reads the property once, so call this at launch, before the
+     * first server is created.
+     */
+    public static void enableNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Starts accepting requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, letting running requests finish.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    /**
+     * Routes a request to the matching endpoint.
+     *
+     * @param exchange the request
+     *
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+
+            try {
+                if (path.length == 1) {
+                    switch (method) {
+                        case "GET" -> list(exchange);
+                        case "POST" -> add(exchange);
+                        default -> send(exchange, 405, null);
+                    }
+                } else if (path.length == 2 && path[1].equals("count")) {
+                    expect(exchange, "GET");
+                    sendJson(exchange, 200, repository.countByStatus());
+                } else if (path.length == 2 && path[1].equals("search")) {
+                    expect(exchange, "GET");
+                    search(exchange);
+                } else if (path.length == 2 && path[1].equals("batch")) {
+                    expect(exchange, "POST");
+                    batch(exchange);
+                } else if (path.length == 2) {
+                    int id = Integer.parseInt(path[1]);
+                    switch (method) {
+                        case "PUT" -> found(exchange, id, repository.updateTask(id, readDescription(exchange)));
+                        case "DELETE" -> found(exchange, id, repository.deleteTask(id));
+                        default -> send(exchange, 405, null);
+                    }
+                } else if (path.length == 3) {
+                    int id = Integer.parseInt(path[1]);
+                    expect(exchange, "POST");
+                    switch (path[2]) {
+                        case "in-progress" -> found(exchange, id, repository.markInProgress(id));
+                        case "done" -> found(exchange, id, repository.markDone(id));
+                        default -> send(exchange, 404, null);
+                    }
+                } else {
+                    send(exchange, 404, null);
+                }
+            } catch (JsonProcessingException e) {
+                sendJson(exchange, 400, Map.of("error", "Malformed JSON body"));
+            } catch (IllegalArgumentException e) {
+                sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+            } catch (MethodNotAllowedException e) {
+                send(exchange, 405, null);
+            }
+        }
+    }
+
+    /**
+     * Streams one page of tasks.
+     */
+    private void list(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        Status status = query.containsKey("status") ? parseStatus(query.get("status")) : null;
+        int after = Integer.parseInt(query.getOrDefault("after", "0"));
+        int limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        List<Task> page = repository.listPage(status, after, limit);
+        if (page.size() == limit) {
+            exchange.getResponseHeaders().set("X-Next-After", String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        streamTasks(exchange, page);
+    }
+
+    private void streamTasks(HttpExchange exchange, List<Task> tasks) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (JsonGenerator generator = writer.createGenerator(exchange.getResponseBody())) {
+            generator.writeStartArray();
+            for (Task task : tasks) {
+                writer.writeValue(generator, task);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        String terms = query.get("q");
+        if (terms == null || terms.isBlank()) {
+            throw new IllegalArgumentException("Missing query parameter q");
+        }
+        int limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        streamTasks(exchange, repository.search(terms, limit));
+    }
+
+    private void add(HttpExchange exchange) throws IOException {
+        int id = repository.addTask(readDescription(exchange));
+        if (id == -1) {
+            send(exchange, 500, null);
+        } else {
+            sendJson(exchange, 201, Map.of("id", id));
+        }
+    }
+
+    /**
+     * Applies the commands of the request body, one per line, as a batch,
+     * and answers one result per command, or 500 if the batch could not be
+     * saved.
+     */
+    private void batch(HttpExchange exchange) throws IOException {
+        List<TaskOperation> operations = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    operations.add(TaskOperation.parse(line));
+                }
+            }
+        }
+
+        List<OperationResult> applied = repository.applyBatch(operations);
+        if (applied.isEmpty() && !operations.isEmpty()) {
+            sendJson(exchange, 500, Map.of("error", "Batch could not be saved"));
+            return;
+        }
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (OperationResult result : applied) {
+            results.add(Map.of("id", result.id(), "success", result.success(), "message", result.message()));
+        }
+        sendJson(exchange, 200, results);
+    }
+
+    private String readDescription(HttpExchange exchange) throws IOException {
+        JsonNode body = mapper.readTree(exchange.getRequestBody());
+        JsonNode description = body == null ? null : body.get("description");
+        if (description == null || !description.isTextual()) {
+            throw new IllegalArgumentException("Body must be {\"description\": \"...\"}");
+        }
+        return description.asText();
+    }
+
+    private static Status parseStatus(String status) {
+        return switch (status) {
+            case "todo" -> Status.TODO;
+            case "in-progress" -> Status.IN_PROGRESS;
+            case "done" -> Status.DONE;
+            default -> throw new IllegalArgumentException("Unknown status: " + status);
+        };
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static void expect(HttpExchange exchange, String method) throws MethodNotAllowedException {
+        if (!exchange.getRequestMethod().equals(method)) {
+            throw new MethodNotAllowedException();
+        }
+    }
+
+    /**
+     * Answers a change of one task: 204 if it was applied, 404 if the task
+     * does not exist, and 500 if it exists but the change could not be saved.
+     */
+    private void found(HttpExchange exchange, int id, boolean changed) throws IOException {
+        send(exchange, changed ? 204 : repository.contains(id) ? 500 : 404, null);
+    }
+
+    private void sendJson(HttpExchange exchange, int code, Object value) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        send(exchange, code, writer.writeValueAsBytes(value));
+    }
+
+    private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(code, body == null ? -1 : body.length);
+        if (body != null) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Signals a request using a method its endpoint does not support.
+     */
+    private static final class MethodNotAllowedException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+}
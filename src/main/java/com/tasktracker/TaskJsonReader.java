@@ -0,0 +1,62 @@
+package com.tasktracker;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Reads {@link Task} objects directly from a Jackson token stream.
+ * <p>
+ * Going through the tokens instead of data binding lets callers skip
+ * tasks they are not interested in before any {@link Task} or
+ * {@link LocalDateTime} is built for them.
+ * </p>
+ */
+final class TaskJsonReader {
+
+    private TaskJsonReader() {
+    }
+
+    /**
+     * Reads the task object the parser is positioned on.
+     *
+     * @param parser parser positioned on the {@code START_OBJECT} token of a task;
+     *               left on its {@code END_OBJECT} token
+     * @param filter only tasks with this status are built, or {@code null} to accept every task
+     * @return the task, or {@code null} if it was rejected by the filter
+     * @throws IOException if the input is malformed
+     */
+    static Task read(JsonParser parser, Status filter) throws IOException {
+        int id = 0;
+        String description = null;
+        Status status = null;
+        String createdAt = null;
+        String updatedAt = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> id = parser.getIntValue();
+                case "description" -> description = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "status" -> status = value == JsonToken.VALUE_NULL ? null : Status.valueOf(parser.getText());
+                case "createdAt" -> createdAt = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "updatedAt" -> updatedAt = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (filter != null && filter != status) {
+            return null;
+        }
+
+        return new Task(id, description, status, parseTime(createdAt), parseTime(updatedAt));
+    }
+
+    private static LocalDateTime parseTime(String text) {
+        return text == null ? null : LocalDateTime.parse(text);
+    }
+
+}
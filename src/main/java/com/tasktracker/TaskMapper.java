@@ -0,0 +1,28 @@
+package com.tasktracker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Factory for the Jackson {@link ObjectMapper} shared by the JSON based stores.
+ */
+final class TaskMapper {
+
+    private TaskMapper() {
+    }
+
+    /**
+     * Creates a mapper that writes ISO-8601 dates and indented output.
+     *
+     * @return configured mapper
+     */
+    static ObjectMapper create() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        return mapper;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.tasktracker;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+
+/**
+ * Operation counters, latency histograms and file traffic of a repository.
+ * <p>
+ * Every public repository operation is timed from call to return. The phases
+ * an operation goes through are timed separately: loading the store, which
+ * is mostly parsing; persisting changes, which is serialization and disk
+ * writes; and building the search and time indexes. Bytes read and written
+ * come from the store's {@link IoCounters}.
+ * </p>
+ */
+public class TaskMetrics {
+
+    /**
+     * Repository operations.
+     */
+    public enum Operation {
+        ADD, UPDATE, DELETE, MARK_IN_PROGRESS, MARK_DONE, BATCH, IMPORT, EXPORT, LIST, SEARCH, TIME_RANGE, COUNT
+    }
+
+    /**
+     * Phases timed inside operations.
+     */
+    public enum Phase {
+        LOAD, PERSIST, INDEX
+    }
+
+    private final EnumMap<Operation, LatencyHistogram> operations = new EnumMap<>(Operation.class);
+
+    private final EnumMap<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+
+    private final IoCounters io;
+
+    /**
+     * Creates empty metrics.
+     *
+     * @param io file traffic counters of the store
+     */
+    public TaskMetrics(IoCounters io) {
+        this.io = io;
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new LatencyHistogram());
+        }
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @param operation repository operation
+     * @return latencies of the operation
+     */
+    public LatencyHistogram operation(Operation operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * @param phase phase inside operations
+     * @return durations of the phase
+     */
+    public LatencyHistogram phase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @return file traffic of the store
+     */
+    public IoCounters getIo() {
+        return io;
+    }
+
+    /**
+     * Registers every histogram and the file counters with the platform MBean
+     * server, under {@code com.tasktracker:type=Operation|Phase|Io,scope=<scope>}.
+     *
+     * @param scope name telling apart the repositories of one process
+     * @throws JMException if a bean is already registered under the same name
+     */
+    public void registerMBeans(String scope) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Operation operation : Operation.values()) {
+            server.registerMBean(operations.get(operation), name("Operation", scope, operation.name()));
+        }
+        for (Phase phase : Phase.values()) {
+            server.registerMBean(phases.get(phase), name("Phase", scope, phase.name()));
+        }
+        server.registerMBean(io, name("Io", scope, "store"));
+    }
+
+    private static ObjectName name(String type, String scope, String name) throws JMException {
+        return new ObjectName("com.tasktracker:type=" + type + ",scope=" + ObjectName.quote(scope)
+                + ",name=" + name.toLowerCase(Locale.ROOT).replace('_', '-'));
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.tasktracker;
+
+/**
+ * A single task change, used to apply many changes at once through
+ * {@link TaskRepository#applyBatch(java.util.List)}.
+ *
+ * @param type        kind of change
+ * @param id          ID of the task to change; ignored for {@link Type#ADD}
+ * @param description task description for {@link Type#ADD} and {@link Type#UPDATE}; {@code null} otherwise
+ */
+public record TaskOperation(Type type, int id, String description) {
+
+    /**
+     * Kinds of change, matching the CLI commands.
+     */
+    public enum Type {
+        /**
+         * Add a new task.
+         */
+        ADD,
+        /**
+         * Change the description of a task.
+         */
+        UPDATE,
+        /**
+         * Remove a task.
+         */
+        DELETE,
+        /**
+         * Mark a task as {@link Status#IN_PROGRESS}.
+         */
+        MARK_IN_PROGRESS,
+        /**
+         * Mark a task as {@link Status#DONE}.
+         */
+        MARK_DONE
+    }
+
+    /**
+     * @param description description of the new task
+     * @return an operation adding a task
+     */
+    public static TaskOperation add(String description) {
+        return new TaskOperation(Type.ADD, 0, description);
+    }
+
+    /**
+     * @param id          task ID
+     * @param description new description
+     * @return an operation updating a task description
+     */
+    public static TaskOperation update(int id, String description) {
+        return new TaskOperation(Type.UPDATE, id, description);
+    }
+
+    /**
+     * @param id task ID
+     * @return an operation deleting a task
+     */
+    public static TaskOperation delete(int id) {
+        return new TaskOperation(Type.DELETE, id, null);
+    }
+
+    /**
+     * @param id task ID
+     * @return an operation marking a task as in progress
+     */
+    public static TaskOperation markInProgress(int id) {
+        return new TaskOperation(Type.MARK_IN_PROGRESS, id, null);
+    }
+
+    /**
+     * @param id task ID
+     * @return an operation marking a task as done
+     */
+    public static TaskOperation markDone(int id) {
+        return new TaskOperation(Type.MARK_DONE, id, null);
+    }
+
+    /**
+     * Parses a command line using the CLI syntax, for example
+     * {@code add "Buy milk"}, {@code update 3 "New text"} or {@code mark-done 3}.
+     * Descriptions may be quoted or simply run to the end of the line.
+     *
+     * @param line command line
+     * @return the parsed operation
+     * @throws IllegalArgumentException if the line is not a valid command
+     */
+    public static TaskOperation parse(String line) {
+        String trimmed = line.strip();
+        int space = trimmed.indexOf(' ');
+        String command = space < 0 ? trimmed : trimmed.substring(0, space);
+        String rest = space < 0 ? "" : trimmed.substring(space + 1).strip();
+
+        return switch (command) {
+            case "add" -> add(description(rest, line));
+            case "update" -> {
+                int idEnd = rest.indexOf(' ');
+                if (idEnd < 0) {
+                    throw new IllegalArgumentException("Usage: update <id> \"New description\": " + line);
+                }
+                yield update(id(rest.substring(0, idEnd), line), description(rest.substring(idEnd + 1).strip(), line));
+            }
+            case "delete" -> delete(id(rest, line));
+            case "mark-in-progress" -> markInProgress(id(rest, line));
+            case "mark-done" -> markDone(id(rest, line));
+            default -> throw new IllegalArgumentException("Unknown command: " + line);
+        };
+    }
+
+    private static int id(String text, String line) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid task ID: " + line);
+        }
+    }
+
+    private static String description(String text, String line) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Missing description: " + line);
+        }
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+
+}
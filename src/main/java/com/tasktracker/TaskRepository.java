@@ -1,31 +1,79 @@
 package com.tasktracker;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tasktracker.TaskMetrics.Operation;
+import com.tasktracker.TaskMetrics.Phase;
 
-import java.io.File;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Repository class handling persistence and retrieval of tasks.
  * <p>
- * Tasks are stored in a JSON file and loaded using Jackson.
- * The repository provides CRUD operations and filtering by status.
+ * Tasks are persisted through a {@link TaskStore}, by default a JSON file
+ * loaded using Jackson. The repository provides CRUD operations and
+ * filtering by status.
+ * </p>
+ * <p>
+ * The repository is safe to share between threads. Reads do not lock and see
+ * a weakly consistent view of the tasks. Writes lock one of a fixed set of
+ * stripes chosen by task ID, so changes to different tasks only meet when
+ * they are handed to the store, which happens one at a time. Reloading the
+ * store excludes every write; with {@link ReloadPolicy#ALWAYS} that means all
+ * operations run one after the other, so concurrent use should pair the
+ * repository with {@link ReloadPolicy#ON_CHANGE}.
  * </p>
  */
 public class TaskRepository {
 
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectMapper mapper = TaskMapper.create();
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final int MAX_WRITE_ATTEMPTS = 10;
+
+    private volatile TaskData data;
+
+    private final TaskStore store;
+
+    private final ReloadPolicy reloadPolicy;
+
+    private volatile boolean loaded;
+
+    private final ReadWriteLock reloadLock = new ReentrantReadWriteLock();
+
+    private final Lock[] stripes = new Lock[LOCK_STRIPES];
 
-    private HashMap<Integer, Task> tasks;
+    private final Lock persistLock = new ReentrantLock();
 
-    private final Path filePath;
+    private final GroupCommit groupCommit;
+
+    private volatile Path searchIndexPath;
+
+    private final TaskMetrics metrics;
+
+    private final ChangeFeed changes = new ChangeFeed();
+
+    private final ListCache listCache = new ListCache();
 
     /**
      * Creates a new repository bound to the specified JSON file.
@@ -33,11 +81,104 @@ public class TaskRepository {
      * @param filePath path to the JSON file used to store tasks
      */
     public TaskRepository(Path filePath) {
-        mapper.registerModule(new JavaTimeModule());
-        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        tasks = new HashMap<>();
-        this.filePath = filePath;
+        this(new JsonTaskStore(filePath));
+    }
+
+    /**
+     * Creates a new repository persisting tasks through the given store.
+     *
+     * @param store storage backend
+     */
+    public TaskRepository(TaskStore store) {
+        this(store, ReloadPolicy.ALWAYS);
+    }
+
+    /**
+     * Creates a new repository persisting tasks through the given store.
+     * <p>
+     * With {@link ReloadPolicy#ON_CHANGE} the tasks are loaded once and then
+     * served from memory; the store is only reloaded when its files were
+     * modified by another process.
+     * </p>
+     *
+     * @param store        storage backend
+     * @param reloadPolicy when to reload tasks from the store
+     */
+    public TaskRepository(TaskStore store, ReloadPolicy reloadPolicy) {
+        this(store, reloadPolicy, Duration.ZERO);
+    }
+
+    /**
+     * Creates a new repository persisting tasks through the given store,
+     * with group commit enabled when the window is positive.
+     * <p>
+     * In group commit mode single-task writes arriving within the commit
+     * window are persisted together with one store write. Every write still
+     * returns only once its change is durable, but each one waits up to the
+     * window before being persisted. Writes only overlap when they do not
+     * need to reload the store, so group commit is meant to be paired with
+     * {@link ReloadPolicy#ON_CHANGE}.
+     * </p>
+     *
+     * @param store        storage backend
+     * @param reloadPolicy when to reload tasks from the store
+     * @param commitWindow how long changes are collected before being written;
+     *                     {@link Duration#ZERO} writes every change on its own
+     */
+    public TaskRepository(TaskStore store, ReloadPolicy reloadPolicy, Duration commitWindow) {
+        if (commitWindow.isNegative()) {
+            throw new IllegalArgumentException("Commit window must not be negative: " + commitWindow);
+        }
+        data = new TaskData();
+        groupCommit = commitWindow.isZero() ? null : new GroupCommit(store, persistLock, commitWindow);
+        this.store = store;
+        this.reloadPolicy = reloadPolicy;
+        metrics = new TaskMetrics(store.getIoCounters());
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Keeps the full-text search index in the given file, so it is read
+     * back instead of rebuilt when the tasks did not change since it was
+     * written.
+     *
+     * @param searchIndexPath index file, or {@code null} to keep the index in memory only
+     */
+    public void setSearchIndexPath(Path searchIndexPath) {
+        this.searchIndexPath = searchIndexPath;
+    }
+
+    /**
+     * Returns the operation latencies, phase durations and file traffic of
+     * this repository, counted since it was created.
+     *
+     * @return live metrics
+     */
+    public TaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the feed of the changes made through this repository. An
+     * event is published once its change is persisted; changes made by
+     * other processes are not published.
+     *
+     * @return the change feed
+     */
+    public ChangeFeed getChangeFeed() {
+        return changes;
+    }
+
+    /**
+     * Returns the cache of rendered lists served by {@link #writeTasks},
+     * {@link #getTasks} and {@link #getTasksByStatus}, for its statistics.
+     *
+     * @return the list cache
+     */
+    public ListCache getListCache() {
+        return listCache;
     }
 
     /**
@@ -48,15 +189,26 @@ public class TaskRepository {
      * @return generated task ID, or -1 if an error occurs
      */
     public int addTask(String description) {
+        long start = System.nanoTime();
         try {
-            deserialize();
-            int id = tasks.keySet().stream().max(Integer::compare).orElse(0) + 1;
-            Task task = new Task(id, description);
-            tasks.put(id, task);
-            serialize();
-            return task.getId();
+            return write(() -> {
+                reloadLock.readLock().lock();
+                try {
+                    Task task = new Task(data.getSequence().next(), description);
+                    data.put(task);
+                    listCache.changed(task.getStatus());
+                    save(task);
+                    changes.publish(TaskEvent.Type.CREATED, task);
+                    return task.getId();
+                } finally {
+                    reloadLock.readLock().unlock();
+                }
+            });
         } catch (IOException e) {
+            loaded = false;
             System.out.println("IOException: " + e);
+        } finally {
+            metrics.operation(Operation.ADD).recordSince(start);
         }
 
         return -1;
@@ -69,21 +221,10 @@ public class TaskRepository {
      * @param description new task description
      *
      * @return {@code true} if the task exists and was updated; {@code false} otherwise
+     * or if the change could not be persisted
      */
     public boolean updateTask(int id, String description) {
-        try {
-            deserialize();
-            if (!tasks.containsKey(id)) {
-                return false;
-            }
-            Task task = tasks.get(id);
-            task.setDescription(description);
-            serialize();
-        } catch (IOException e) {
-            System.out.println("IOException: " + e);
-        }
-
-        return true;
+        return modify(id, Operation.UPDATE, task -> data.setDescription(task, description));
     }
 
     /**
@@ -92,20 +233,34 @@ public class TaskRepository {
      * @param id task ID
      *
      * @return {@code true} if successfully deleted; {@code false} if the task does not exist
+     * or the deletion could not be persisted
      */
     public boolean deleteTask(int id) {
+        long start = System.nanoTime();
         try {
-            deserialize();
-            if (!tasks.containsKey(id)) {
-                return false;
-            }
-            tasks.remove(id);
-            serialize();
+            return write(() -> {
+                Lock lock = lockTask(id);
+                try {
+                    Task removed = data.remove(id);
+                    if (removed == null) {
+                        return false;
+                    }
+                    listCache.changed(removed.getStatus());
+                    persistDelete(id);
+                    changes.publish(TaskEvent.Type.DELETED, removed);
+                    return true;
+                } finally {
+                    unlockTask(lock);
+                }
+            });
         } catch (IOException e) {
+            loaded = false;
             System.out.println("IOException: " + e);
+        } finally {
+            metrics.operation(Operation.DELETE).recordSince(start);
         }
 
-        return true;
+        return false;
     }
 
     /**
@@ -116,62 +271,240 @@ public class TaskRepository {
      * @return {@code true} if updated; {@code false} otherwise
      */
     public boolean markInProgress(int id) {
+        return modify(id, Operation.MARK_IN_PROGRESS, task -> data.setStatus(task, Status.IN_PROGRESS));
+    }
+
+    /**
+     * Marks a task as {@link Status#DONE}.
+     *
+     * @param id task ID
+     *
+     * @return {@code true} if updated; {@code false} otherwise
+     */
+    public boolean markDone(int id) {
+        return modify(id, Operation.MARK_DONE, task -> data.setStatus(task, Status.DONE));
+    }
+
+    /**
+     * Applies a list of operations with a single load and a single persist.
+     * <p>
+     * Operations run in order against the in-memory tasks while other writers
+     * of this repository are held off; an operation on a missing task fails
+     * without affecting the others. All changes are then handed to the store
+     * in one {@link TaskStore#saveChanges} call. If another process changed
+     * the store in the meantime the whole batch is applied again on fresh data.
+     * </p>
+     *
+     * @param operations operations to apply, in order
+     *
+     * @return one result per operation, or an empty list if the batch could not be persisted
+     */
+    public List<OperationResult> applyBatch(List<TaskOperation> operations) {
+        long start = System.nanoTime();
         try {
-            deserialize();
-            if (!tasks.containsKey(id)) {
-                return false;
-            }
-            Task task = tasks.get(id);
-            task.setStatus(Status.IN_PROGRESS);
-            serialize();
+            return write(() -> {
+                reloadLock.writeLock().lock();
+                try {
+                    Map<Integer, Task> saved = new LinkedHashMap<>();
+                    Set<Integer> deleted = new LinkedHashSet<>();
+                    List<Change> applied = new ArrayList<>();
+                    List<OperationResult> results = new ArrayList<>(operations.size());
+                    for (TaskOperation operation : operations) {
+                        results.add(apply(operation, saved, deleted, applied));
+                    }
+
+                    if (!saved.isEmpty() || !deleted.isEmpty()) {
+                        long persistStart = System.nanoTime();
+                        persistLock.lock();
+                        try {
+                            store.saveChanges(saved.values(), deleted, data);
+                        } finally {
+                            persistLock.unlock();
+                            metrics.phase(Phase.PERSIST).recordSince(persistStart);
+                        }
+                    }
+                    for (Change change : applied) {
+                        changes.publish(change.type(), change.task());
+                    }
+                    return results;
+                } finally {
+                    reloadLock.writeLock().unlock();
+                }
+            });
         } catch (IOException e) {
+            loaded = false;
             System.out.println("IOException: " + e);
+        } finally {
+            metrics.operation(Operation.BATCH).recordSince(start);
         }
 
-        return true;
+        return List.of();
     }
 
     /**
-     * Marks a task as {@link Status#DONE}.
+     * Applies one batch operation in memory and records what must be
+     * persisted and published.
+     */
+    private OperationResult apply(TaskOperation operation, Map<Integer, Task> saved, Set<Integer> deleted,
+                                  List<Change> applied) {
+        if (operation.type() == TaskOperation.Type.ADD) {
+            Task task = new Task(data.getSequence().next(), operation.description());
+            data.put(task);
+            listCache.changed(task.getStatus());
+            saved.put(task.getId(), task);
+            applied.add(new Change(TaskEvent.Type.CREATED, task));
+            return new OperationResult(operation, true, task.getId());
+        }
+
+        Task task = data.get(operation.id());
+        if (task == null) {
+            return new OperationResult(operation, false, operation.id());
+        }
+        Status before = task.getStatus();
+        switch (operation.type()) {
+            case UPDATE -> {
+                data.setDescription(task, operation.description());
+                applied.add(new Change(TaskEvent.Type.UPDATED, task));
+            }
+            case MARK_IN_PROGRESS -> {
+                data.setStatus(task, Status.IN_PROGRESS);
+                listCache.changed(Status.IN_PROGRESS);
+                applied.add(new Change(TaskEvent.Type.STATUS_CHANGED, task));
+            }
+            case MARK_DONE -> {
+                data.setStatus(task, Status.DONE);
+                listCache.changed(Status.DONE);
+                applied.add(new Change(TaskEvent.Type.STATUS_CHANGED, task));
+            }
+            case DELETE -> {
+                data.remove(task.getId());
+                listCache.changed(before);
+                saved.remove(task.getId());
+                deleted.add(task.getId());
+                applied.add(new Change(TaskEvent.Type.DELETED, task));
+                return new OperationResult(operation, true, task.getId());
+            }
+        }
+        listCache.changed(before);
+        saved.put(task.getId(), task);
+        return new OperationResult(operation, true, task.getId());
+    }
+
+    /**
+     * Adds every task of an NDJSON or CSV input with a single persist.
+     * <p>
+     * Records are parsed in parallel chunks by {@link TaskTransfer}, take
+     * new IDs in input order and are added as each chunk is parsed, while
+     * other writers of this repository are held off; the store is then
+     * rewritten once with {@link TaskStore#saveAll}. The input cannot be read
+     * twice, so unlike other writes an import is not retried when another
+     * process changed the store meanwhile: it fails and nothing is imported.
+     * A malformed record also leaves the store unchanged.
+     * </p>
      *
-     * @param id task ID
+     * @param in     input text
+     * @param format input format
      *
-     * @return {@code true} if updated; {@code false} otherwise
+     * @return number of imported tasks, or -1 if an error occurs
+     *
+     * @throws IllegalArgumentException if a record is malformed; its message names the line
      */
-    public boolean markDone(int id) {
+    public int importTasks(BufferedReader in, TaskTransfer.Format format) {
+        long start = System.nanoTime();
         try {
             deserialize();
-            if (!tasks.containsKey(id)) {
-                return false;
+            reloadLock.writeLock().lock();
+            try {
+                int firstId = data.getSequence().peek();
+                int imported = TaskTransfer.read(in, format, data.getSequence(), tasks -> {
+                    for (Task task : tasks) {
+                        data.put(task);
+                    }
+                    listCache.changedAll();
+                });
+                if (imported == 0) {
+                    return 0;
+                }
+
+                long persistStart = System.nanoTime();
+                persistLock.lock();
+                try {
+                    store.saveAll(data);
+                } finally {
+                    persistLock.unlock();
+                    metrics.phase(Phase.PERSIST).recordSince(persistStart);
+                }
+                for (int id = firstId, end = data.getSequence().peek(); id < end; id++) {
+                    Task task = data.get(id);
+                    if (task != null) {
+                        changes.publish(TaskEvent.Type.CREATED, task);
+                    }
+                }
+                return imported;
+            } catch (IOException | RuntimeException e) {
+                loaded = false;
+                throw e;
+            } finally {
+                reloadLock.writeLock().unlock();
             }
-            Task task = tasks.get(id);
-            task.setStatus(Status.DONE);
-            serialize();
         } catch (IOException e) {
             System.out.println("IOException: " + e);
+        } finally {
+            metrics.operation(Operation.IMPORT).recordSince(start);
         }
 
-        return true;
+        return -1;
+    }
+
+    /**
+     * Streams every task in ascending ID order as NDJSON or CSV.
+     * <p>
+     * Tasks are read and written one at a time, so memory use does not
+     * depend on the number of tasks. The writer is flushed but not closed.
+     * </p>
+     *
+     * @param out    destination
+     * @param format output format
+     *
+     * @return number of tasks written
+     *
+     * @throws IOException if writing fails
+     */
+    public int exportTasks(Writer out, TaskTransfer.Format format) throws IOException {
+        long start = System.nanoTime();
+        try {
+            try {
+                deserialize();
+            } catch (IOException e) {
+                System.out.println("IOException: " + e);
+            }
+
+            return TaskTransfer.write(data.iterate(null, 0).iterator(), format, out);
+        } finally {
+            metrics.operation(Operation.EXPORT).recordSince(start);
+        }
     }
 
     /**
      * Retrieves all tasks stored in the repository.
      *
-     * @return JSON string containing all tasks, or "No tasks." if empty
+     * @return JSON string containing all tasks in ascending ID order, or "No tasks." if empty
      *
      * @throws JsonProcessingException if serialization fails
      */
     public String getTasks() throws JsonProcessingException {
+        long start = System.nanoTime();
         try {
-            deserialize();
-        } catch (IOException e) {
-            System.out.println("IOException: " + e);
-        }
+            try {
+                deserialize();
+            } catch (IOException e) {
+                System.out.println("IOException: " + e);
+            }
 
-        if (!tasks.isEmpty()) {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(tasks.values());
-        } else {
-            return "No tasks.";
+            String tasks = render(null);
+            return tasks != null ? tasks : "No tasks.";
+        } finally {
+            metrics.operation(Operation.LIST).recordSince(start);
         }
     }
 
@@ -186,54 +519,637 @@ public class TaskRepository {
      * @throws JsonProcessingException if serialization fails
      */
     public String getTasksByStatus(Status status) throws JsonProcessingException {
+        long start = System.nanoTime();
         try {
-            deserialize();
+            try {
+                deserialize();
+            } catch (IOException e) {
+                System.out.println("IOException: " + e);
+            }
+
+            String tasks = render(status);
+            return tasks != null ? tasks : "No task with status " + status + ".";
+        } finally {
+            metrics.operation(Operation.LIST).recordSince(start);
+        }
+    }
+
+    /**
+     * Streams tasks as a JSON array straight to the given output stream.
+     * <p>
+     * Tasks are written one at a time through a {@link JsonGenerator}, so
+     * memory use does not depend on the number of tasks. Nothing is written
+     * when no task matches. The stream is flushed but not closed.
+     * </p>
+     *
+     * @param out     destination stream
+     * @param status  status filter, or {@code null} for every task
+     * @param compact {@code true} to write the array on a single line
+     *
+     * @return number of tasks written
+     *
+     * @throws IOException if writing to the stream fails
+     */
+    public int writeTasks(OutputStream out, Status status, boolean compact) throws IOException {
+        return writeTasks(out, status, 0, Integer.MAX_VALUE, compact);
+    }
+
+    /**
+     * Streams one page of tasks as a JSON array straight to the given output stream.
+     * <p>
+     * Tasks are taken in ascending ID order from the first ID above
+     * {@code afterId}, found through the ordered ID index, so only the
+     * tasks of the page are visited and serialized. Pass the ID of the last
+     * task of a page as {@code afterId} to get the next one. Nothing is
+     * written when no task matches.
+     * </p>
+     *
+     * @param out     destination stream
+     * @param status  status filter, or {@code null} for every task
+     * @param afterId only tasks with a greater ID are written; 0 starts from the beginning
+     * @param limit   maximum number of tasks written
+     * @param compact {@code true} to write the array on a single line
+     *
+     * @return number of tasks written
+     *
+     * @throws IOException if writing to the stream fails
+     */
+    public int writeTasks(OutputStream out, Status status, int afterId, int limit, boolean compact)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            try {
+                deserialize();
+            } catch (IOException e) {
+                System.out.println("IOException: " + e);
+            }
+
+            return writeCached(out, status, afterId, limit, compact);
+        } finally {
+            metrics.operation(Operation.LIST).recordSince(start);
+        }
+    }
+
+    /**
+     * Streams the tasks matching a search query as a JSON array straight to
+     * the given output stream. Nothing is written when no task matches.
+     *
+     * @param out     destination stream
+     * @param query   terms separated by spaces; a trailing {@code *} makes a term a prefix
+     * @param limit   maximum number of tasks written
+     * @param compact {@code true} to write the array on a single line
+     *
+     * @return number of tasks written
+     *
+     * @throws IOException if writing to the stream fails
+     */
+    public int writeSearch(OutputStream out, String query, int limit, boolean compact) throws IOException {
+        return writeJson(out, search(query, limit).iterator(), limit, compact);
+    }
+
+    /**
+     * Renders every task with the given status as an indented JSON array,
+     * through the list cache.
+     *
+     * @return the JSON array, or {@code null} if no task matches
+     */
+    private String render(Status status) throws JsonProcessingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (writeCached(out, status, 0, Integer.MAX_VALUE, false) == 0) {
+                return null;
+            }
+        } catch (JsonProcessingException e) {
+            throw e;
         } catch (IOException e) {
-            System.out.println("IOException: " + e);
+            throw new UncheckedIOException(e);
         }
+        return out.toString(StandardCharsets.UTF_8).stripTrailing();
+    }
 
-        List<Task> taskList = new ArrayList<>(tasks.values());
-        List<Task> statusList = new ArrayList<>();
-        for (Task task : taskList) {
-            if (task.getStatus().equals(status)) {
-                statusList.add(task);
+    /**
+     * Writes a page of tasks from the list cache, or renders it through the
+     * cache when the cached copy is missing or stale. The version is taken
+     * before the tasks are read, so a page rendered while a change was being
+     * made is stored under the old version and never served.
+     *
+     * @return number of tasks written
+     */
+    private int writeCached(OutputStream out, Status status, int afterId, int limit, boolean compact)
+            throws IOException {
+        ListCache.Key key = new ListCache.Key(status, afterId, limit, compact);
+        long version = listCache.version(status);
+        ListCache.Entry cached = listCache.get(key, version);
+        if (cached != null) {
+            out.write(cached.bytes());
+            out.flush();
+            return cached.count();
+        }
+
+        ListCache.Capture capture = listCache.capture(out);
+        int written = writeJson(capture, data.iterate(status, afterId).iterator(), limit, compact);
+        listCache.put(key, version, capture, written);
+        return written;
+    }
+
+    /**
+     * Writes up to {@code limit} tasks as a JSON array followed by a line break.
+     *
+     * @return number of tasks written
+     */
+    private int writeJson(OutputStream out, Iterator<Task> tasks, int limit, boolean compact) throws IOException {
+        if (limit < 1 || !tasks.hasNext()) {
+            return 0;
+        }
+
+        ObjectWriter writer = (compact
+                ? mapper.writer().without(SerializationFeature.INDENT_OUTPUT)
+                : mapper.writerWithDefaultPrettyPrinter())
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        int written = 0;
+        try (JsonGenerator generator = writer.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            while (tasks.hasNext() && written < limit) {
+                writer.writeValue(generator, tasks.next());
+                written++;
+            }
+            generator.writeEndArray();
+        }
+        out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        return written;
+    }
+
+    /**
+     * Retrieves one page of tasks in ascending ID order.
+     * <p>
+     * Pass the ID of the last task of a page as {@code afterId} to get the
+     * next one. Only the tasks of the page are visited.
+     * </p>
+     *
+     * @param status  status filter, or {@code null} for every task
+     * @param afterId only tasks with a greater ID are returned; 0 starts from the beginning
+     * @param limit   maximum number of tasks returned
+     *
+     * @return the tasks of the page
+     */
+    public List<Task> listPage(Status status, int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            try {
+                deserialize();
+            } catch (IOException e) {
+                System.out.println("IOException: " + e);
             }
+
+            return data.page(status, afterId, limit);
+        } finally {
+            metrics.operation(Operation.LIST).recordSince(start);
         }
+    }
+
+    /**
+     * Finds the tasks whose description matches every term of a query.
+     * <p>
+     * The inverted index is built, or read from the index file, on the first
+     * search after a load and then kept up to date by every write.
+     * </p>
+     *
+     * @param query terms separated by spaces; a trailing {@code *} makes a term a prefix
+     * @param limit maximum number of tasks returned
+     *
+     * @return matching tasks in ascending ID order
+     */
+    public List<Task> search(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            try {
+                deserialize();
+            } catch (IOException e) {
+                System.out.println("IOException: " + e);
+            }
 
-        if (!statusList.isEmpty()) {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(statusList);
-        } else {
-            return "No task with status " + status + ".";
+            TaskData current = data;
+            SearchIndex index = current.getSearchIndex();
+            if (index == null) {
+                index = attachSearchIndex();
+                current = data;
+            }
+
+            List<Task> matches = new ArrayList<>();
+            for (int id : index.search(query)) {
+                if (matches.size() == limit) {
+                    break;
+                }
+                Task task = current.get(id);
+                if (task != null) {
+                    matches.add(task);
+                }
+            }
+            return matches;
+        } finally {
+            metrics.operation(Operation.SEARCH).recordSince(start);
         }
     }
 
     /**
-     * Serializes the task collection to disk.
+     * Finds the tasks whose creation or last update time falls within a range.
+     * <p>
+     * The tasks come from a sorted timestamp index, built on the first time
+     * query after a load and then kept up to date by every write, so the
+     * cost depends on the number of tasks in the range and not on the size
+     * of the store. To poll for changes, pass the update time of the last
+     * task seen as {@code from}; since the bound is inclusive, that task is
+     * returned again. Deleted tasks are not reported.
+     * </p>
      *
-     * @throws IOException if writing to the file fails
+     * @param field  timestamp to look at
+     * @param from   inclusive lower bound, or {@code null} for no lower bound
+     * @param to     exclusive upper bound, or {@code null} for no upper bound
+     * @param status status filter, or {@code null} for every task
+     * @param limit  maximum number of tasks returned
+     *
+     * @return matching tasks ordered by the chosen timestamp
      */
-    private void serialize() throws IOException {
-        mapper.writeValue(new File(String.valueOf(filePath)), tasks.values());
+    public List<Task> listByTime(TimeIndex.Field field, LocalDateTime from, LocalDateTime to, Status status,
+                                 int limit) {
+        long start = System.nanoTime();
+        try {
+            try {
+                deserialize();
+            } catch (IOException e) {
+                System.out.println("IOException: " + e);
+            }
+
+            TaskData current = data;
+            TimeIndex index = current.getTimeIndex();
+            if (index == null) {
+                index = attachTimeIndex();
+                current = data;
+            }
+
+            List<Task> matches = new ArrayList<>();
+            for (int id : index.range(field, from, to)) {
+                if (matches.size() == limit) {
+                    break;
+                }
+                Task task = current.get(id);
+                if (task != null && (status == null || task.getStatus() == status)) {
+                    matches.add(task);
+                }
+            }
+            return matches;
+        } finally {
+            metrics.operation(Operation.TIME_RANGE).recordSince(start);
+        }
+    }
+
+    /**
+     * Streams the tasks whose creation or last update time falls within a
+     * range as a JSON array straight to the given output stream. Nothing is
+     * written when no task matches.
+     *
+     * @param out     destination stream
+     * @param field   timestamp to look at
+     * @param from    inclusive lower bound, or {@code null} for no lower bound
+     * @param to      exclusive upper bound, or {@code null} for no upper bound
+     * @param status  status filter, or {@code null} for every task
+     * @param limit   maximum number of tasks written
+     * @param compact {@code true} to write the array on a single line
+     *
+     * @return number of tasks written
+     *
+     * @throws IOException if writing to the stream fails
+     */
+    public int writeTimeRange(OutputStream out, TimeIndex.Field field, LocalDateTime from, LocalDateTime to,
+                              Status status, int limit, boolean compact) throws IOException {
+        return writeJson(out, listByTime(field, from, to, status, limit).iterator(), limit, compact);
+    }
+
+    /**
+     * Builds the time index of the current tasks while writes are held off.
+     *
+     * @return the attached index
+     */
+    private TimeIndex attachTimeIndex() {
+        reloadLock.writeLock().lock();
+        try {
+            TimeIndex index = data.getTimeIndex();
+            if (index == null) {
+                long start = System.nanoTime();
+                index = TimeIndex.build(data.values());
+                metrics.phase(Phase.INDEX).recordSince(start);
+                data.setTimeIndex(index);
+            }
+            return index;
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads or builds the search index of the current tasks while writes are held off.
+     *
+     * @return the attached index
+     */
+    private SearchIndex attachSearchIndex() {
+        reloadLock.writeLock().lock();
+        try {
+            SearchIndex index = data.getSearchIndex();
+            if (index != null) {
+                return index;
+            }
+            long start = System.nanoTime();
+            Path path = searchIndexPath;
+            index = path == null ? null : SearchIndex.load(path, data.values());
+            if (index == null) {
+                index = SearchIndex.build(data.values());
+                if (path != null) {
+                    try {
+                        index.save(path, data.values());
+                    } catch (IOException e) {
+                        System.out.println("IOException: " + e);
+                    }
+                }
+            }
+            data.setSearchIndex(index);
+            metrics.phase(Phase.INDEX).recordSince(start);
+            return index;
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tells whether a task exists, reloading the tasks first if needed. A
+     * change that returned {@code false} failed to persist if the task
+     * still exists.
+     *
+     * @param id task ID
+     *
+     * @return {@code true} if a task with this ID exists
+     */
+    public boolean contains(int id) {
+        try {
+            deserialize();
+        } catch (IOException e) {
+            System.out.println("IOException: " + e);
+        }
+
+        return data.contains(id);
+    }
+
+    /**
+     * Counts tasks per status using the status index.
+     *
+     * @return number of tasks for every status
+     */
+    public EnumMap<Status, Integer> countByStatus() {
+        long start = System.nanoTime();
+        try {
+            try {
+                deserialize();
+            } catch (IOException e) {
+                System.out.println("IOException: " + e);
+            }
+
+            EnumMap<Status, Integer> counts = new EnumMap<>(Status.class);
+            for (Status status : Status.values()) {
+                counts.put(status, data.count(status));
+            }
+            return counts;
+        } finally {
+            metrics.operation(Operation.COUNT).recordSince(start);
+        }
     }
-    
+
     /**
-     * Loads tasks from disk into memory.
+     * Loads tasks from the store into memory, unless the reload policy
+     * allows the tasks already in memory to be reused.
+     * <p>
+     * Reloading waits for in-flight writes and blocks new ones.
+     * </p>
      *
      * @throws IOException if file reading fails
      */
     private void deserialize() throws IOException {
-        TypeReference<List<Task>> typeReference = new TypeReference<>() {
-        };
+        if (reloadPolicy == ReloadPolicy.ON_CHANGE && loaded && !isStoreModified()) {
+            return;
+        }
+
+        reloadLock.writeLock().lock();
+        try {
+            if (reloadPolicy == ReloadPolicy.ALWAYS || !loaded || isStoreModified()) {
+                long start = System.nanoTime();
+                data = store.load();
+                listCache.changedAll();
+                metrics.phase(Phase.LOAD).recordSince(start);
+                loaded = true;
+            }
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a change to an existing task and persists it.
+     *
+     * @param id        task ID
+     * @param operation operation timed in the metrics
+     * @param change    change applied to the task while its stripe is locked
+     *
+     * @return {@code true} if updated; {@code false} if the task does not exist or the
+     * change could not be persisted
+     */
+    private boolean modify(int id, Operation operation, Consumer<Task> change) {
+        long start = System.nanoTime();
+        try {
+            return write(() -> {
+                Lock lock = lockTask(id);
+                try {
+                    Task task = data.get(id);
+                    if (task == null) {
+                        return false;
+                    }
+                    Status before = task.getStatus();
+                    change.accept(task);
+                    listCache.changed(before);
+                    if (task.getStatus() != before) {
+                        listCache.changed(task.getStatus());
+                    }
+                    save(task);
+                    changes.publish(operation == Operation.UPDATE
+                            ? TaskEvent.Type.UPDATED : TaskEvent.Type.STATUS_CHANGED, task);
+                    return true;
+                } finally {
+                    unlockTask(lock);
+                }
+            });
+        } catch (IOException e) {
+            loaded = false;
+            System.out.println("IOException: " + e);
+        } finally {
+            metrics.operation(operation).recordSince(start);
+        }
 
-        if (Files.exists(filePath)) {
-            List<Task> taskList = mapper.readValue(new File(String.valueOf(filePath)), typeReference);
+        return false;
+    }
 
-            tasks = new HashMap<>();
-            for (Task task : taskList) {
-                tasks.put(task.getId(), task);
+    /**
+     * Runs a write against freshly loaded tasks.
+     * <p>
+     * When the store reports that another process changed it in the meantime,
+     * the tasks are reloaded and the write is applied again after a short
+     * random back-off, up to {@value #MAX_WRITE_ATTEMPTS} times, so concurrent
+     * updates are never lost.
+     * </p>
+     *
+     * @param mutation the write to run
+     * @param <T>      result type
+     *
+     * @return the result of the write
+     *
+     * @throws IOException if loading or persisting fails, or the store kept changing
+     */
+    private <T> T write(Mutation<T> mutation) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            deserialize();
+            try {
+                return mutation.apply();
+            } catch (ConcurrentUpdateException e) {
+                loaded = false;
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    throw e;
+                }
+                backOff(attempt, e);
             }
         }
+    }
+
+    /**
+     * Sleeps for a random delay growing with the attempt number, so writers
+     * that keep colliding spread out instead of retrying in lockstep.
+     *
+     * @param attempt number of attempts made so far
+     * @param cause   the conflict being retried
+     *
+     * @throws ConcurrentUpdateException if the thread is interrupted while waiting
+     */
+    private static void backOff(int attempt, ConcurrentUpdateException cause) throws ConcurrentUpdateException {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1 << Math.min(attempt, 8)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * Asks the store whether it changed, without waiting for a persist in
+     * progress. A write seen half done only causes a check under the reload
+     * lock, which waits for the writer.
+     */
+    private boolean isStoreModified() throws IOException {
+        return store.isModified();
+    }
 
+    /**
+     * Hands a deletion to the store, one write at a time or grouped with
+     * concurrent writes in group commit mode.
+     *
+     * @param id ID of the deleted task
+     *
+     * @throws IOException if writing fails
+     */
+    private void persistDelete(int id) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (groupCommit != null) {
+                groupCommit.delete(id, data);
+                return;
+            }
+            persistLock.lock();
+            try {
+                store.delete(id, data);
+            } finally {
+                persistLock.unlock();
+            }
+        } finally {
+            metrics.phase(Phase.PERSIST).recordSince(start);
+        }
+    }
+
+    /**
+     * Hands a changed task to the store, one write at a time or grouped with
+     * concurrent writes in group commit mode.
+     *
+     * @param task the added or modified task
+     *
+     * @throws IOException if writing fails
+     */
+    private void save(Task task) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (groupCommit != null) {
+                groupCommit.save(task, data);
+                return;
+            }
+            persistLock.lock();
+            try {
+                store.save(task, data);
+            } finally {
+                persistLock.unlock();
+            }
+        } finally {
+            metrics.phase(Phase.PERSIST).recordSince(start);
+        }
+    }
+
+    /**
+     * Locks the stripe guarding the given task ID, preventing a concurrent reload.
+     *
+     * @param id task ID
+     *
+     * @return the stripe lock, to be passed to {@link #unlockTask(Lock)}
+     */
+    private Lock lockTask(int id) {
+        reloadLock.readLock().lock();
+        Lock stripe = stripes[Math.floorMod(id, LOCK_STRIPES)];
+        stripe.lock();
+        return stripe;
+    }
+
+    private void unlockTask(Lock stripe) {
+        stripe.unlock();
+        reloadLock.readLock().unlock();
+    }
+
+    /**
+     * A repository write that may be retried.
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    private interface Mutation<T> {
+
+        /**
+         * @return the result of the write
+         *
+         * @throws IOException if persisting fails
+         */
+        T apply() throws IOException;
+
+    }
+
+    /**
+     * A change made by a batch, published once the batch is persisted.
+     *
+     * @param type kind of change
+     * @param task the task after the change, or as it was when deleted
+     */
+    private record Change(TaskEvent.Type type, Task task) {
     }
 
 }
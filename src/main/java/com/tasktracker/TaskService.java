@@ -1,8 +1,22 @@
 package com.tasktracker;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service layer connecting the CLI and the task repository.
@@ -12,8 +26,13 @@ import java.nio.file.Path;
  */
 public class TaskService {
 
+    private static final ObjectWriter EVENT_WRITER = TaskMapper.create().writer()
+            .without(SerializationFeature.INDENT_OUTPUT);
+
     private final TaskRepository repository;
 
+    private final PrintStream out;
+
     /**
      * Creates a new TaskService using the provided repository file path.
      *
@@ -21,6 +40,28 @@ public class TaskService {
      */
     public TaskService(Path repoFilePath) {
         repository = new TaskRepository(repoFilePath);
+        out = System.out;
+    }
+
+    /**
+     * Creates a new TaskService on top of an existing repository.
+     *
+     * @param repository repository holding the tasks
+     */
+    public TaskService(TaskRepository repository) {
+        this(repository, System.out);
+    }
+
+    /**
+     * Creates a new TaskService on top of an existing repository, printing
+     * results to the given stream.
+     *
+     * @param repository repository holding the tasks
+     * @param out        destination of the printed results
+     */
+    public TaskService(TaskRepository repository, PrintStream out) {
+        this.repository = repository;
+        this.out = out;
     }
 
     /**
@@ -74,46 +115,296 @@ public class TaskService {
         return repository.markDone(id);
     }
 
+    /**
+     * Applies a list of operations with a single load and a single persist.
+     *
+     * @param operations operations to apply, in order
+     * @return one result per operation, or an empty list if the batch could not be persisted
+     */
+    public List<OperationResult> applyBatch(List<TaskOperation> operations) {
+        return repository.applyBatch(operations);
+    }
+
+    /**
+     * Imports every task of an NDJSON or CSV input with a single persist and
+     * prints how many were added. If any record is invalid, nothing is
+     * imported and the first error is printed.
+     *
+     * @param reader source of the records
+     * @param format input format
+     */
+    public void importTasks(BufferedReader reader, TaskTransfer.Format format) {
+        try {
+            int imported = repository.importTasks(reader, format);
+            if (imported >= 0) {
+                out.println("Imported " + imported + " tasks.");
+            }
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            out.println("Import not applied.");
+        }
+    }
+
+    /**
+     * Streams every task as NDJSON or CSV.
+     *
+     * @param writer destination; flushed but not closed
+     * @param format output format
+     * @return number of tasks written
+     * @throws IOException if writing fails
+     */
+    public int exportTasks(Writer writer, TaskTransfer.Format format) throws IOException {
+        return repository.exportTasks(writer, format);
+    }
+
+    /**
+     * Reads newline-delimited commands, applies them as one batch and prints
+     * one result line per command. Blank lines and lines starting with
+     * {@code #} are skipped. If any line is invalid, or the batch cannot be
+     * saved, nothing is applied.
+     *
+     * @param reader source of commands
+     * @throws IOException if reading the commands fails
+     */
+    public void runBatch(BufferedReader reader) throws IOException {
+        List<TaskOperation> operations = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                operations.add(TaskOperation.parse(line));
+            } catch (IllegalArgumentException e) {
+                errors.add("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            errors.forEach(out::println);
+            out.println("Batch not applied.");
+            return;
+        }
+
+        List<OperationResult> results = repository.applyBatch(operations);
+        if (results.isEmpty() && !operations.isEmpty()) {
+            out.println("Batch not applied.");
+            return;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            out.println((i + 1) + ": " + results.get(i).message());
+        }
+    }
+
     /**
      * Prints all tasks.
      *
-     * @throws JsonProcessingException if JSON parsing fails
+     * @throws IOException if writing the output fails
      */
-    public void listAll() throws JsonProcessingException {
-        String tasks = repository.getTasks();
-        System.out.println(tasks);
+    public void listAll() throws IOException {
+        list(null, false);
     }
 
     /**
      * Prints tasks with status {@link Status#DONE}.
      *
-     * @throws JsonProcessingException if JSON parsing fails
+     * @throws IOException if writing the output fails
      */
-    public void listDone() throws JsonProcessingException {
-        String doneTasks = repository.getTasksByStatus(Status.DONE);
-        System.out.println(doneTasks);
+    public void listDone() throws IOException {
+        list(Status.DONE, false);
     }
 
     /**
      * Prints tasks with status {@link Status#TODO}.
      *
-     * @throws JsonProcessingException if JSON parsing fails
+     * @throws IOException if writing the output fails
      */
-    public void listTodo() throws JsonProcessingException {
-        String todoTasks = repository.getTasksByStatus(Status.TODO);
-        System.out.println(todoTasks);
+    public void listTodo() throws IOException {
+        list(Status.TODO, false);
     }
 
     /**
      * Prints tasks with status {@link Status#IN_PROGRESS}.
      *
-     * @throws JsonProcessingException if JSON parsing fails
+     * @throws IOException if writing the output fails
      */
-    public void listInProgress() throws JsonProcessingException {
-        String inProgressTasks = repository.getTasksByStatus(Status.IN_PROGRESS);
-        System.out.println(inProgressTasks);
+    public void listInProgress() throws IOException {
+        list(Status.IN_PROGRESS, false);
     }
 
+    /**
+     * Streams tasks to the output stream of this service.
+     *
+     * @param status  status filter, or {@code null} for every task
+     * @param compact {@code true} for single-line JSON instead of indented output
+     *
+     * @throws IOException if writing the output fails
+     */
+    public void list(Status status, boolean compact) throws IOException {
+        list(status, 0, Integer.MAX_VALUE, compact);
+    }
+
+    /**
+     * Streams one page of tasks, in ascending ID order, to the output stream
+     * of this service.
+     *
+     * @param status  status filter, or {@code null} for every task
+     * @param afterId only tasks with a greater ID are printed; 0 starts from the beginning
+     * @param limit   maximum number of tasks printed
+     * @param compact {@code true} for single-line JSON instead of indented output
+     *
+     * @throws IOException if writing the output fails
+     */
+    public void list(Status status, int afterId, int limit, boolean compact) throws IOException {
+        if (repository.writeTasks(out, status, afterId, limit, compact) == 0) {
+            out.println(status == null ? "No tasks." : "No task with status " + status + ".");
+        }
+    }
+
+    /**
+     * Prints the tasks whose creation or last update time falls within a
+     * range, ordered by that time.
+     *
+     * @param field   timestamp to look at
+     * @param from    inclusive lower bound, or {@code null} for no lower bound
+     * @param to      exclusive upper bound, or {@code null} for no upper bound
+     * @param status  status filter, or {@code null} for every task
+     * @param limit   maximum number of tasks printed
+     * @param compact {@code true} for single-line JSON instead of indented output
+     *
+     * @throws IOException if writing the output fails
+     */
+    public void listByTime(TimeIndex.Field field, LocalDateTime from, LocalDateTime to, Status status, int limit,
+                           boolean compact) throws IOException {
+        if (repository.writeTimeRange(out, field, from, to, status, limit, compact) == 0) {
+            out.println("No task in this time range.");
+        }
+    }
+
+    /**
+     * Prints the tasks whose description matches every term of a query.
+     *
+     * @param query   terms separated by spaces; a trailing {@code *} makes a term a prefix
+     * @param limit   maximum number of tasks printed
+     * @param compact {@code true} for single-line JSON instead of indented output
+     *
+     * @throws IOException if writing the output fails
+     */
+    public void search(String query, int limit, boolean compact) throws IOException {
+        if (repository.writeSearch(out, query, limit, compact) == 0) {
+            out.println("No task matches \"" + query + "\".");
+        }
+    }
+
+    /**
+     * Prints the number of tasks for every status.
+     */
+    public void countByStatus() {
+        repository.countByStatus().forEach((status, count) -> out.println(status + ": " + count));
+    }
+
+    /**
+     * Prints every change made through the repository as it is persisted,
+     * one JSON object per line, until printing fails because the reader went
+     * away or the calling thread is interrupted.
+     * <p>
+     * Events are requested one at a time, so a slow reader holds back only
+     * its own feed. If the reader falls too far behind, or resumes from a
+     * sequence that is no longer retained, an error line is printed and the
+     * watch ends.
+     * </p>
+     *
+     * @param afterSequence last sequence number already seen, or -1 to start with the next change
+     */
+    public void watch(long afterSequence) {
+        ChangeFeed feed = repository.getChangeFeed();
+        Flow.Publisher<TaskEvent> publisher = afterSequence < 0 ? feed : feed.after(afterSequence);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicReference<Flow.Subscription> current = new AtomicReference<>();
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                current.set(subscription);
+                if (done.isDone()) {
+                    subscription.cancel();
+                } else {
+                    subscription.request(1);
+                }
+            }
+
+            @Override
+            public void onNext(TaskEvent event) {
+                try {
+                    out.println(EVENT_WRITER.writeValueAsString(event));
+                } catch (JsonProcessingException e) {
+                    out.println("Error: " + e.getMessage());
+                }
+                if (out.checkError()) {
+                    current.get().cancel();
+                    done.complete(null);
+                } else {
+                    current.get().request(1);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                out.println("Error: " + error.getMessage());
+                done.complete(null);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            out.println("Error: " + e.getCause());
+        } finally {
+            done.complete(null);
+            Flow.Subscription subscription = current.get();
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    /**
+     * Prints the latency of every operation and phase run so far, in
+     * microseconds, followed by the bytes the store read and wrote and the
+     * list cache statistics.
+     */
+    public void stats() {
+        TaskMetrics metrics = repository.getMetrics();
+        out.printf("%-18s %10s %10s %10s %10s %10s%n", "", "count", "mean", "p50", "p99", "max");
+        for (TaskMetrics.Operation operation : TaskMetrics.Operation.values()) {
+            printLatency(operation.name().toLowerCase(Locale.ROOT).replace('_', '-'), metrics.operation(operation));
+        }
+        for (TaskMetrics.Phase phase : TaskMetrics.Phase.values()) {
+            printLatency("(" + phase.name().toLowerCase(Locale.ROOT) + ")", metrics.phase(phase));
+        }
+        out.println("bytes read: " + metrics.getIo().getBytesRead());
+        out.println("bytes written: " + metrics.getIo().getBytesWritten());
+        ListCache cache = repository.getListCache();
+        out.println("list cache: " + cache.getHitCount() + " hits, " + cache.getMissCount() + " misses, "
+                + cache.getEvictionCount() + " evictions, " + cache.getEntryCount() + " entries, "
+                + cache.getByteCount() + " bytes");
+    }
+
+    private void printLatency(String name, LatencyHistogram histogram) {
+        out.printf("%-18s %10d %10.1f %10.1f %10.1f %10.1f%n", name, histogram.getCount(),
+                histogram.getMeanMicros(), histogram.getP50Micros(), histogram.getP99Micros(),
+                histogram.getMaxMicros());
+    }
 
 }
 
@@ -0,0 +1,100 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Persistence backend used by {@link TaskRepository}.
+ * <p>
+ * A store loads the full task set on startup and is notified of every
+ * mutation so it can persist it in whatever way suits its format.
+ * </p>
+ */
+public interface TaskStore {
+
+    /**
+     * Loads every persisted task along with the ID sequence.
+     *
+     * @return the loaded state; empty if nothing has been stored yet
+     *
+     * @throws IOException if reading the underlying files fails
+     */
+    TaskData load() throws IOException;
+
+    /**
+     * Persists a task that was added or modified.
+     *
+     * @param task the added or modified task
+     * @param data every task currently held by the repository
+     *
+     * @throws IOException if writing fails
+     */
+    void save(Task task, TaskData data) throws IOException;
+
+    /**
+     * Persists the removal of a task.
+     *
+     * @param id   ID of the removed task
+     * @param data every task currently held by the repository
+     *
+     * @throws IOException if writing fails
+     */
+    void delete(int id, TaskData data) throws IOException;
+
+    /**
+     * Persists a set of changes made together, such as a batch.
+     * <p>
+     * Stores write the changes together where their format allows it, so
+     * that they become durable as a unit. By default the whole state is
+     * rewritten with {@link #saveAll(TaskData)}.
+     * </p>
+     *
+     * @param saved   added or modified tasks
+     * @param deleted IDs of removed tasks
+     * @param data    every task currently held by the repository
+     *
+     * @throws IOException if writing fails
+     */
+    default void saveChanges(Collection<Task> saved, Collection<Integer> deleted, TaskData data) throws IOException {
+        saveAll(data);
+    }
+
+    /**
+     * Replaces everything persisted by this store with the given state.
+     *
+     * @param data tasks and ID sequence to persist
+     *
+     * @throws IOException if writing fails
+     */
+    void saveAll(TaskData data) throws IOException;
+
+    /**
+     * Tells whether the persisted data changed since this store last loaded
+     * or wrote it, for instance because another process modified the files.
+     * <p>
+     * Stores that cannot tell always answer {@code true}. Readers call this
+     * without any lock, possibly while another thread writes the store, so
+     * it must not wait for writes in progress.
+     * </p>
+     *
+     * @return {@code true} if the data must be reloaded
+     *
+     * @throws IOException if the files cannot be inspected
+     */
+    default boolean isModified() throws IOException {
+        return true;
+    }
+
+    /**
+     * Returns the running totals of file bytes read and written by this store.
+     * <p>
+     * Stores that do not count return counters that stay at zero.
+     * </p>
+     *
+     * @return the store's counters
+     */
+    default IoCounters getIoCounters() {
+        return new IoCounters();
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Helpers for picking a {@link TaskStore} from a file name and for moving
+ * tasks between storage formats.
+ */
+public final class TaskStores {
+
+    private TaskStores() {
+    }
+
+    /**
+     * Opens the store matching the file extension: {@code .bin} for the
+     * memory-mapped binary format, {@code .meta} for metadata with
+     * descriptions read on demand, {@code .gz} for compressed JSON, indented
+     * JSON otherwise. {@code tasks.shards} names the sharded store made of
+     * {@code tasks.0.json}, {@code tasks.1.json} and so on, with as many
+     * shards as the {@code tasktracker.shards} system property gives
+     * ({@value ShardedTaskStore#DEFAULT_SHARD_COUNT} by default).
+     *
+     * @param path path to the store file
+     * @return a store bound to the file
+     */
+    public static TaskStore forPath(Path path) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(".shards")) {
+            Path base = path.resolveSibling(name.substring(0, name.length() - ".shards".length()) + ".json");
+            return new ShardedTaskStore(base,
+                    Integer.getInteger("tasktracker.shards", ShardedTaskStore.DEFAULT_SHARD_COUNT));
+        }
+        if (name.endsWith(".bin")) {
+            return new MappedTaskStore(path);
+        }
+        if (name.endsWith(".meta")) {
+            return new LazyTaskStore(path);
+        }
+        return new JsonTaskStore(path, name.endsWith(".gz"));
+    }
+
+    /**
+     * Copies every task and the ID sequence from one store file to another,
+     * converting between formats based on the file extensions.
+     *
+     * @param source file to read
+     * @param target file to write; replaced if it exists
+     * @return number of tasks copied
+     * @throws IOException if reading or writing fails
+     */
+    public static int convert(Path source, Path target) throws IOException {
+        TaskData data = forPath(source).load();
+        forPath(target).saveAll(data);
+        return data.size();
+    }
+
+}
@@ -0,0 +1,901 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Columnar storage of tasks keyed by ID.
+ * <p>
+ * Every field lives in a primitive array indexed by row: IDs in an
+ * {@code int[]}, status ordinals in a {@code byte[]}, and both timestamps as
+ * nanoseconds since the epoch in a {@code long[]}; only descriptions are
+ * objects. IDs are mapped to rows by an open-addressing hash table of
+ * {@code int} keys with linear probing, so no key is ever boxed. A task costs
+ * under 50 bytes plus its description, counting the {@link IdSet} indexes
+ * of {@link TaskData}, against more than 200 as a {@link Task} in a hash
+ * map, and {@link Task} objects are only created when a task is read.
+ * </p>
+ * <p>
+ * IDs are spread by hash over 64 segments, each with its own columns and
+ * lock, so threads loading or changing different tasks rarely wait for each
+ * other. Rows of removed tasks are reused by later additions, so rows never
+ * move while their task is present. Changes to a segment are serialized by
+ * its write lock. Reads do not lock: they copy a row and retry under the
+ * read lock only if a change ran meanwhile. Iteration is weakly consistent:
+ * it never fails and returns every task present throughout exactly once.
+ * </p>
+ * <p>
+ * Timestamps must lie between the years 1677 and 2262, the range of a
+ * {@code long} count of nanoseconds.
+ * </p>
+ * <p>
+ * A table created with a {@link DescriptionFile} keeps descriptions on disk:
+ * a row holds a reference into the file instead of the string, and the
+ * description is read, through the file's cache, only when a {@link Task}
+ * is built. New and changed descriptions stay in memory until a store
+ * writes them out and calls {@link #spill}.
+ * </p>
+ */
+final class TaskTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final byte FREE = -1;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final Status[] STATUSES = Status.values();
+
+    private static final int SEGMENT_BITS = 6;
+
+    /**
+     * Description reference of rows whose description is in memory or {@code null}.
+     */
+    static final long NO_REF = -1;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    private final DescriptionFile descriptionFile;
+
+    /**
+     * Creates an empty table sized for the given number of tasks.
+     *
+     * @param expectedSize number of tasks the table is expected to hold
+     */
+    TaskTable(int expectedSize) {
+        this(expectedSize, null);
+    }
+
+    /**
+     * Creates an empty table sized for the given number of tasks, reading
+     * spilled descriptions from the given file.
+     *
+     * @param expectedSize    number of tasks the table is expected to hold
+     * @param descriptionFile file holding the descriptions, or {@code null} to keep them all in memory
+     */
+    TaskTable(int expectedSize, DescriptionFile descriptionFile) {
+        this.descriptionFile = descriptionFile;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(Math.max(MIN_CAPACITY, expectedSize / segments.length), descriptionFile);
+        }
+    }
+
+    /**
+     * @return the file spilled descriptions are read from, or {@code null} if every description is in memory
+     */
+    DescriptionFile getDescriptionFile() {
+        return descriptionFile;
+    }
+
+    /**
+     * @return number of tasks
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @param id task ID
+     * @return {@code true} if a task with this ID is stored
+     */
+    boolean contains(int id) {
+        return segment(id).contains(id);
+    }
+
+    /**
+     * Reads a task.
+     *
+     * @param id task ID
+     * @return a new task holding the stored fields, or {@code null} if there is none with this ID
+     */
+    Task get(int id) {
+        return segment(id).get(id);
+    }
+
+    /**
+     * Stores a task, replacing any task with the same ID.
+     *
+     * @param task task to store; later changes to it are not seen by the table
+     * @return the replaced task, or {@code null} if there was none
+     * @throws ArithmeticException if a timestamp is out of range
+     */
+    Task put(Task task) {
+        return segment(task.getId()).put(task, NO_REF);
+    }
+
+    /**
+     * Stores a task whose description is kept in the description file.
+     *
+     * @param task           task to store; its description is ignored
+     * @param descriptionRef location of the description in the file
+     * @return the replaced task, or {@code null} if there was none
+     * @throws ArithmeticException if a timestamp is out of range
+     */
+    Task put(Task task, long descriptionRef) {
+        return segment(task.getId()).put(task, descriptionRef);
+    }
+
+    /**
+     * Writes the fields of a stored task back to its row.
+     *
+     * @param task changed task
+     * @return {@code false} if no task with this ID is stored
+     * @throws ArithmeticException if a timestamp is out of range
+     */
+    boolean update(Task task) {
+        return segment(task.getId()).update(task);
+    }
+
+    /**
+     * Writes the status and update time of a stored task back to its row,
+     * leaving the description where it is.
+     *
+     * @param task changed task
+     * @return {@code false} if no task with this ID is stored
+     * @throws ArithmeticException if the update time is out of range
+     */
+    boolean updateStatus(Task task) {
+        return segment(task.getId()).updateStatus(task);
+    }
+
+    /**
+     * Drops a description from memory once a store has written it to the
+     * description file. Nothing happens if the description changed since
+     * it was read.
+     *
+     * @param id             task ID
+     * @param description    the description as visited by {@link #forEachRow}
+     * @param descriptionRef where it was written
+     */
+    void spill(int id, String description, long descriptionRef) {
+        segment(id).spill(id, description, descriptionRef);
+    }
+
+    /**
+     * Visits the stored fields of every task without building tasks or
+     * reading spilled descriptions. Iteration is weakly consistent, like
+     * {@link #values()}.
+     *
+     * @param visitor receives every row
+     * @throws IOException if the visitor fails
+     */
+    void forEachRow(RowVisitor visitor) throws IOException {
+        Row copy = new Row();
+        for (Segment segment : segments) {
+            for (int row = 0, end = segment.highWater(); row < end; row++) {
+                if (segment.readRow(row, copy, id -> true)) {
+                    visitor.visit(copy.id, STATUSES[copy.status], copy.createdAt, copy.updatedAt, copy.description,
+                            copy.descriptionRef);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits the stored fields of one task, like {@link #forEachRow}.
+     *
+     * @param id      task ID
+     * @param visitor receives the row
+     * @return {@code false} if no task with this ID is stored
+     * @throws IOException if the visitor fails
+     */
+    boolean visitRow(int id, RowVisitor visitor) throws IOException {
+        Row copy = new Row();
+        if (!segment(id).find(id, copy)) {
+            return false;
+        }
+        visitor.visit(copy.id, STATUSES[copy.status], copy.createdAt, copy.updatedAt, copy.description,
+                copy.descriptionRef);
+        return true;
+    }
+
+    /**
+     * @return total length of the descriptions the rows refer to in the description file
+     */
+    long storedDescriptionBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.storedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Removes a task.
+     *
+     * @param id task ID
+     * @return the removed task, or {@code null} if there was none
+     */
+    Task remove(int id) {
+        Row copy = new Row();
+        return segment(id).remove(id, copy) ? copy.toTask(descriptionFile) : null;
+    }
+
+    /**
+     * Removes a task without building it, so a description kept in the
+     * description file is not read.
+     *
+     * @param id task ID
+     * @return the status of the removed task, or {@code null} if there was none
+     */
+    Status removeStored(int id) {
+        Row copy = new Row();
+        return segment(id).remove(id, copy) ? STATUSES[copy.status] : null;
+    }
+
+    /**
+     * @return every task, in storage order; each one is read as it is reached
+     */
+    AbstractCollection<Task> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Task> iterator() {
+                return new RowIterator(id -> true);
+            }
+
+            @Override
+            public int size() {
+                return TaskTable.this.size();
+            }
+        };
+    }
+
+    /**
+     * Selects tasks by ID. IDs are tested on the ID column, so only the
+     * selected tasks are ever built.
+     *
+     * @param filter test applied to the IDs
+     * @return the selected tasks, in storage order; each one is read as it is reached
+     */
+    AbstractCollection<Task> select(IntPredicate filter) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Task> iterator() {
+                return new RowIterator(filter);
+            }
+
+            @Override
+            public int size() {
+                int count = 0;
+                Row copy = new Row();
+                for (Segment segment : segments) {
+                    for (int row = 0, end = segment.highWater(); row < end; row++) {
+                        if (segment.readRow(row, copy, filter)) {
+                            count++;
+                        }
+                    }
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Picks a segment from the high bits of a multiplicative hash; the hash
+     * tables inside segments use the low bits.
+     */
+    private Segment segment(int id) {
+        return segments[(id * 0x9E3779B9) >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    static long toNanos(LocalDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        long nanos = Math.addExact(Math.multiplyExact(time.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L),
+                time.getNano());
+        if (nanos == NO_TIME) {
+            throw new ArithmeticException("Timestamp out of range: " + time);
+        }
+        return nanos;
+    }
+
+    static LocalDateTime fromNanos(long nanos) {
+        if (nanos == NO_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * Receives the stored fields of a row.
+     */
+    @FunctionalInterface
+    interface RowVisitor {
+
+        /**
+         * @param id             task ID
+         * @param status         status
+         * @param createdAt      creation time as nanoseconds since the epoch, or {@link Long#MIN_VALUE} if unset
+         * @param updatedAt      update time as nanoseconds since the epoch, or {@link Long#MIN_VALUE} if unset
+         * @param description    the description if it is held in memory, {@code null} otherwise
+         * @param descriptionRef location of the description in the description file, or {@link #NO_REF}
+         * @throws IOException if handling the row fails
+         */
+        void visit(int id, Status status, long createdAt, long updatedAt, String description, long descriptionRef)
+                throws IOException;
+
+    }
+
+    /**
+     * One independently locked part of the table, holding the IDs that hash to it.
+     */
+    private static final class Segment {
+
+        private final StampedLock lock = new StampedLock();
+
+        private Columns columns;
+
+        private int size;
+
+        private int highWater;
+
+        private int[] freeRows = new int[0];
+
+        private int freeCount;
+
+        /**
+         * Total length of the descriptions the rows refer to in the description file.
+         */
+        private long storedBytes;
+
+        private final DescriptionFile descriptionFile;
+
+        /**
+         * Creates an empty segment with room for the given number of tasks.
+         */
+        Segment(int capacity, DescriptionFile descriptionFile) {
+            this.descriptionFile = descriptionFile;
+            columns = new Columns(capacity, descriptionFile != null);
+        }
+
+        /**
+         * @return number of tasks
+         */
+        int size() {
+            long stamp = lock.tryOptimisticRead();
+            int current = size;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    current = size;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return current;
+        }
+
+        /**
+         * @param id task ID
+         * @return {@code true} if a task with this ID is stored
+         */
+        boolean contains(int id) {
+            long stamp = lock.tryOptimisticRead();
+            boolean found = columns.find(id) >= 0;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    found = columns.find(id) >= 0;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * @return total length of the descriptions the rows refer to in the description file
+         */
+        long storedBytes() {
+            long stamp = lock.tryOptimisticRead();
+            long current = storedBytes;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    current = storedBytes;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Copies the row of an ID, retrying under the read lock if a change ran meanwhile.
+         *
+         * @return {@code false} if no task with this ID is stored
+         */
+        boolean find(int id, Row copy) {
+            long stamp = lock.tryOptimisticRead();
+            Columns current = columns;
+            boolean found = copy.copy(current, current.find(id));
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    current = columns;
+                    found = copy.copy(current, current.find(id));
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Reads a task.
+         *
+         * @param id task ID
+         * @return a new task holding the stored fields, or {@code null} if there is none with this ID
+         */
+        Task get(int id) {
+            Row row = new Row();
+            long stamp = lock.tryOptimisticRead();
+            Columns current = columns;
+            boolean found = row.copy(current, current.find(id));
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    current = columns;
+                    found = row.copy(current, current.find(id));
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return found ? row.toTask(descriptionFile) : null;
+        }
+
+        /**
+         * Stores a task, replacing any task with the same ID.
+         *
+         * @param task           task to store; later changes to it are not seen by the table
+         * @param descriptionRef location of the description in the description file, or {@link #NO_REF}
+         * @return the replaced task, or {@code null} if there was none
+         * @throws ArithmeticException if a timestamp is out of range
+         */
+        Task put(Task task, long descriptionRef) {
+            long created = toNanos(task.getCreatedAt());
+            long updated = toNanos(task.getUpdatedAt());
+            long stamp = lock.writeLock();
+            try {
+                int row = columns.find(task.getId());
+                Task previous = null;
+                if (row >= 0) {
+                    Row copy = new Row();
+                    copy.copy(columns, row);
+                    previous = copy.toTask(descriptionFile);
+                    storedBytes -= columns.storedLength(row);
+                } else {
+                    row = allocateRow();
+                    columns.insert(task.getId(), row);
+                    size++;
+                }
+                columns.write(row, task, created, updated, descriptionRef);
+                storedBytes += columns.storedLength(row);
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Writes the fields of a stored task back to its row.
+         *
+         * @param task changed task
+         * @return {@code false} if no task with this ID is stored
+         * @throws ArithmeticException if a timestamp is out of range
+         */
+        boolean update(Task task) {
+            long created = toNanos(task.getCreatedAt());
+            long updated = toNanos(task.getUpdatedAt());
+            long stamp = lock.writeLock();
+            try {
+                int row = columns.find(task.getId());
+                if (row < 0) {
+                    return false;
+                }
+                storedBytes -= columns.storedLength(row);
+                columns.write(row, task, created, updated, NO_REF);
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Writes the status and update time of a stored task back to its row.
+         *
+         * @param task changed task
+         * @return {@code false} if no task with this ID is stored
+         * @throws ArithmeticException if the update time is out of range
+         */
+        boolean updateStatus(Task task) {
+            long updated = toNanos(task.getUpdatedAt());
+            long stamp = lock.writeLock();
+            try {
+                int row = columns.find(task.getId());
+                if (row < 0) {
+                    return false;
+                }
+                columns.statuses[row] = (byte) (task.getStatus() == null ? Status.TODO : task.getStatus()).ordinal();
+                columns.updatedAt[row] = updated;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Replaces an in-memory description by its reference, if it is still the current one.
+         */
+        void spill(int id, String description, long descriptionRef) {
+            long stamp = lock.writeLock();
+            try {
+                int row = columns.find(id);
+                if (row >= 0 && columns.descriptions[row] == description) {
+                    storedBytes -= columns.storedLength(row);
+                    columns.descriptions[row] = null;
+                    columns.descriptionRefs[row] = descriptionRef;
+                    storedBytes += columns.storedLength(row);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Removes a task.
+         *
+         * @param id   task ID
+         * @param copy receives the fields of the removed task
+         * @return {@code false} if there was no task with this ID
+         */
+        boolean remove(int id, Row copy) {
+            long stamp = lock.writeLock();
+            try {
+                int row = columns.find(id);
+                if (row < 0) {
+                    return false;
+                }
+                copy.copy(columns, row);
+                storedBytes -= columns.storedLength(row);
+                columns.delete(id);
+                columns.statuses[row] = FREE;
+                columns.descriptions[row] = null;
+                if (columns.descriptionRefs != null) {
+                    columns.descriptionRefs[row] = NO_REF;
+                }
+                if (freeCount == freeRows.length) {
+                    freeRows = Arrays.copyOf(freeRows, Math.max(MIN_CAPACITY, freeCount * 2));
+                }
+                freeRows[freeCount++] = row;
+                size--;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Takes a free row, growing the columns when every row is used.
+         */
+        private int allocateRow() {
+            if (freeCount > 0) {
+                return freeRows[--freeCount];
+            }
+            if (highWater == columns.ids.length) {
+                columns = columns.grow();
+            }
+            return highWater++;
+        }
+
+        /**
+         * Copies the given row, retrying under the read lock if a change ran meanwhile.
+         *
+         * @return {@code true} if the row holds a task whose ID passes the filter
+         */
+        boolean readRow(int row, Row copy, IntPredicate filter) {
+            long stamp = lock.tryOptimisticRead();
+            boolean found = copy.copy(columns, row);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    found = copy.copy(columns, row);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return found && filter.test(copy.id);
+        }
+
+        int highWater() {
+            long stamp = lock.tryOptimisticRead();
+            int current = highWater;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    current = highWater;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return current;
+        }
+
+    }
+
+    /**
+     * One generation of the column arrays and of the ID hash table. A larger
+     * generation replaces it when rows run out; rows keep their position.
+     */
+    private static final class Columns {
+
+        final int[] ids;
+
+        final byte[] statuses;
+
+        final long[] createdAt;
+
+        final long[] updatedAt;
+
+        final String[] descriptions;
+
+        /**
+         * Locations of spilled descriptions, or {@code null} when every
+         * description is kept in memory.
+         */
+        final long[] descriptionRefs;
+
+        /**
+         * Hash table slots: the ID and its row + 1, 0 marking an empty slot.
+         * There is a power of two of them, at least 4/3 of the rows, so the
+         * table is never more than three quarters full and probes stay short.
+         */
+        final int[] keys;
+
+        final int[] slots;
+
+        final int mask;
+
+        Columns(int capacity, boolean spilled) {
+            ids = new int[capacity];
+            statuses = new byte[capacity];
+            Arrays.fill(statuses, FREE);
+            createdAt = new long[capacity];
+            updatedAt = new long[capacity];
+            descriptions = new String[capacity];
+            descriptionRefs = spilled ? new long[capacity] : null;
+            int tableSize = Integer.highestOneBit(capacity + capacity / 3) << 1;
+            keys = new int[tableSize];
+            slots = new int[tableSize];
+            mask = tableSize - 1;
+        }
+
+        Columns grow() {
+            Columns grown = new Columns(ids.length + (ids.length >> 1), descriptionRefs != null);
+            System.arraycopy(ids, 0, grown.ids, 0, ids.length);
+            System.arraycopy(statuses, 0, grown.statuses, 0, statuses.length);
+            System.arraycopy(createdAt, 0, grown.createdAt, 0, createdAt.length);
+            System.arraycopy(updatedAt, 0, grown.updatedAt, 0, updatedAt.length);
+            System.arraycopy(descriptions, 0, grown.descriptions, 0, descriptions.length);
+            if (descriptionRefs != null) {
+                System.arraycopy(descriptionRefs, 0, grown.descriptionRefs, 0, descriptionRefs.length);
+            }
+            for (int row = 0; row < ids.length; row++) {
+                if (statuses[row] != FREE) {
+                    grown.insert(ids[row], row);
+                }
+            }
+            return grown;
+        }
+
+        /**
+         * Looks up the row of an ID. The probe is bounded, so a read racing
+         * with a change always ends; the caller validates what it read.
+         *
+         * @return the row, or -1 if the ID is not stored
+         */
+        int find(int id) {
+            int slot = hash(id) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (keys[slot] == id) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void insert(int id, int row) {
+            int slot = hash(id) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id;
+            slots[slot] = row + 1;
+        }
+
+        /**
+         * Removes an ID from the hash table, shifting back the entries that
+         * follow it so no probe sequence is broken.
+         */
+        void delete(int id) {
+            int hole = hash(id) & mask;
+            while (keys[hole] != id || slots[hole] == 0) {
+                hole = (hole + 1) & mask;
+            }
+            int next = (hole + 1) & mask;
+            while (slots[next] != 0) {
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    slots[hole] = slots[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            slots[hole] = 0;
+        }
+
+        /**
+         * @return length of the description the row refers to in the description file, 0 if it is in memory
+         */
+        long storedLength(int row) {
+            return descriptionRefs == null || descriptionRefs[row] == NO_REF
+                    ? 0 : DescriptionFile.length(descriptionRefs[row]);
+        }
+
+        void write(int row, Task task, long created, long updated, long descriptionRef) {
+            ids[row] = task.getId();
+            statuses[row] = (byte) (task.getStatus() == null ? Status.TODO : task.getStatus()).ordinal();
+            createdAt[row] = created;
+            updatedAt[row] = updated;
+            if (descriptionRefs != null && descriptionRef != NO_REF) {
+                descriptions[row] = null;
+                descriptionRefs[row] = descriptionRef;
+            } else {
+                descriptions[row] = task.getDescription();
+                if (descriptionRefs != null) {
+                    descriptionRefs[row] = NO_REF;
+                }
+            }
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+    }
+
+    /**
+     * Fields of one row, copied out before a {@link Task} is built from them,
+     * so a read racing with a change never builds one from torn values.
+     */
+    private static final class Row {
+
+        int id;
+
+        byte status;
+
+        long createdAt;
+
+        long updatedAt;
+
+        String description;
+
+        long descriptionRef;
+
+        /**
+         * @return {@code false} if the row is out of range or free
+         */
+        boolean copy(Columns columns, int row) {
+            if (row < 0 || row >= columns.ids.length) {
+                return false;
+            }
+            id = columns.ids[row];
+            status = columns.statuses[row];
+            createdAt = columns.createdAt[row];
+            updatedAt = columns.updatedAt[row];
+            description = columns.descriptions[row];
+            descriptionRef = columns.descriptionRefs == null ? NO_REF : columns.descriptionRefs[row];
+            return status != FREE;
+        }
+
+        /**
+         * @param descriptionFile file spilled descriptions are read from
+         * @throws java.io.UncheckedIOException if reading a spilled description fails
+         */
+        Task toTask(DescriptionFile descriptionFile) {
+            String text = description == null && descriptionRef != NO_REF
+                    ? descriptionFile.read(descriptionRef)
+                    : description;
+            return new Task(id, text, STATUSES[status], fromNanos(createdAt), fromNanos(updatedAt));
+        }
+
+    }
+
+    /**
+     * Walks the rows in order, reading each task as it is reached.
+     */
+    private final class RowIterator implements Iterator<Task> {
+
+        private final IntPredicate filter;
+
+        private final Row copy = new Row();
+
+        private int segment;
+
+        private int row;
+
+        private Task next;
+
+        RowIterator(IntPredicate filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && segment < segments.length) {
+                Segment current = segments[segment];
+                if (row < current.highWater()) {
+                    if (current.readRow(row++, copy, filter)) {
+                        next = copy.toTask(descriptionFile);
+                    }
+                } else {
+                    segment++;
+                    row = 0;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Task task = next;
+            next = null;
+            return task;
+        }
+
+    }
+
+}
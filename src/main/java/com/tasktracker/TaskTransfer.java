@@ -0,0 +1,459 @@
+package com.tasktracker;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bulk import and export of tasks as NDJSON or CSV.
+ * <p>
+ * Import reads the input as text records, one line each except for quoted
+ * CSV fields spanning lines, and cuts them into chunks of
+ * {@value #CHUNK_SIZE}. Each chunk gets a block of IDs from the sequence and
+ * is parsed on the common {@link ForkJoinPool}, while the reading thread
+ * goes on with the next ones. Parsed chunks are handed over in input order,
+ * so IDs follow the input. At most a few chunks per core are in flight, so
+ * memory use does not depend on the size of the input.
+ * </p>
+ * <p>
+ * Imported tasks take new IDs; an {@code id} in the input is ignored. A
+ * missing status defaults to {@link Status#TODO}, a missing creation time to
+ * the time of the import, and a missing update time to the creation time.
+ * CSV input starts with a header naming its columns, in any order; only
+ * {@code description} is required and unknown columns are ignored.
+ * </p>
+ */
+public final class TaskTransfer {
+
+    /**
+     * Number of records parsed as one unit of work.
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    private static final String[] CSV_COLUMNS = {"id", "description", "status", "createdAt", "updatedAt"};
+
+    private static final ObjectMapper MAPPER = TaskMapper.create();
+
+    private static final ObjectWriter LINE_WRITER = MAPPER.writer()
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .withRootValueSeparator("\n");
+
+    /**
+     * Supported file formats.
+     */
+    public enum Format {
+
+        /**
+         * One JSON task object per line.
+         */
+        NDJSON,
+
+        /**
+         * Comma-separated values with a header line, quoted as in RFC 4180.
+         */
+        CSV;
+
+        /**
+         * @param path file name
+         * @return {@link #CSV} for names ending in {@code .csv}, {@link #NDJSON} otherwise
+         */
+        static Format forPath(Path path) {
+            return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+        }
+
+        /**
+         * @param name format name, in any case
+         * @return the format
+         * @throws IllegalArgumentException if there is no format with this name
+         */
+        static Format parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+
+    }
+
+    /**
+     * Receives parsed tasks, one chunk at a time, in input order.
+     */
+    @FunctionalInterface
+    interface ChunkSink {
+
+        /**
+         * @param tasks tasks parsed from one chunk
+         */
+        void accept(List<Task> tasks);
+
+    }
+
+    private TaskTransfer() {
+    }
+
+    /**
+     * Parses every record of the input.
+     *
+     * @param in     input text
+     * @param format input format
+     * @param ids    sequence the new IDs are reserved from, one block per chunk
+     * @param sink   receives the parsed tasks on the calling thread
+     * @return number of tasks read
+     * @throws IOException              if reading the input fails
+     * @throws IllegalArgumentException if a record is malformed; its message names the line
+     */
+    static int read(BufferedReader in, Format format, IdSequence ids, ChunkSink sink) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        RecordReader records = new RecordReader(in, format);
+        int[] columns = format == Format.CSV ? readHeader(records) : null;
+
+        int maxPending = 2 * ForkJoinPool.getCommonPoolParallelism() + 1;
+        Deque<CompletableFuture<List<Task>>> pending = new ArrayDeque<>();
+        int count = 0;
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        int[] lines = new int[CHUNK_SIZE];
+        String record;
+        while ((record = records.next()) != null) {
+            if (record.isBlank()) {
+                continue;
+            }
+            lines[chunk.size()] = records.recordLine();
+            chunk.add(record);
+            if (chunk.size() == CHUNK_SIZE) {
+                pending.add(parseAsync(chunk, lines, ids.reserve(chunk.size()), format, columns, now));
+                chunk = new ArrayList<>(CHUNK_SIZE);
+                lines = new int[CHUNK_SIZE];
+                if (pending.size() == maxPending) {
+                    count += deliver(pending.poll(), sink);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            pending.add(parseAsync(chunk, lines, ids.reserve(chunk.size()), format, columns, now));
+        }
+        while (!pending.isEmpty()) {
+            count += deliver(pending.poll(), sink);
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes tasks in the given format. Tasks are serialized one at a time
+     * as they are reached, so memory use does not depend on their number.
+     * The writer is flushed but not closed.
+     *
+     * @param tasks  tasks to write
+     * @param format output format
+     * @param out    destination
+     * @return number of tasks written
+     * @throws IOException if writing fails
+     */
+    static int write(Iterator<Task> tasks, Format format, Writer out) throws IOException {
+        int written = 0;
+        if (format == Format.CSV) {
+            out.write(String.join(",", CSV_COLUMNS));
+            out.write('\n');
+            while (tasks.hasNext()) {
+                writeCsv(tasks.next(), out);
+                written++;
+            }
+        } else {
+            try (JsonGenerator generator = LINE_WRITER.createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                while (tasks.hasNext()) {
+                    LINE_WRITER.writeValue(generator, tasks.next());
+                    written++;
+                }
+            }
+            if (written > 0) {
+                out.write('\n');
+            }
+        }
+        out.flush();
+        return written;
+    }
+
+    private static void writeCsv(Task task, Writer out) throws IOException {
+        out.write(Integer.toString(task.getId()));
+        out.write(',');
+        writeCsvField(task.getDescription(), out);
+        out.write(',');
+        out.write(task.getStatus() == null ? "" : task.getStatus().name());
+        out.write(',');
+        out.write(task.getCreatedAt() == null ? "" : task.getCreatedAt().toString());
+        out.write(',');
+        out.write(task.getUpdatedAt() == null ? "" : task.getUpdatedAt().toString());
+        out.write('\n');
+    }
+
+    private static void writeCsvField(String value, Writer out) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * Reads the CSV header.
+     *
+     * @return position of each of {@link #CSV_COLUMNS} in a record, or -1 for absent columns
+     */
+    private static int[] readHeader(RecordReader records) throws IOException {
+        String header = records.next();
+        if (header == null) {
+            return null;
+        }
+        int[] columns = new int[CSV_COLUMNS.length];
+        Arrays.fill(columns, -1);
+        List<String> names;
+        try {
+            names = splitCsv(header);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + records.recordLine() + ": " + e.getMessage(), e);
+        }
+        for (int i = 0; i < names.size(); i++) {
+            for (int column = 0; column < CSV_COLUMNS.length; column++) {
+                if (CSV_COLUMNS[column].equalsIgnoreCase(names.get(i).trim())) {
+                    columns[column] = i;
+                }
+            }
+        }
+        if (columns[1] == -1) {
+            throw new IllegalArgumentException("Line " + records.recordLine() + ": no description column in CSV header");
+        }
+        return columns;
+    }
+
+    /**
+     * Starts parsing a chunk.
+     *
+     * @param lines line number each record starts on, for error messages
+     */
+    private static CompletableFuture<List<Task>> parseAsync(List<String> chunk, int[] lines, int firstId,
+                                                            Format format, int[] columns, LocalDateTime now) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Task> tasks = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                String record = chunk.get(i);
+                try {
+                    tasks.add(format == Format.CSV
+                            ? parseCsv(record, firstId + i, columns, now)
+                            : parseJson(record, firstId + i, now));
+                } catch (IOException | RuntimeException e) {
+                    throw new IllegalArgumentException("Line " + lines[i] + ": " + e.getMessage(), e);
+                }
+            }
+            return tasks;
+        }, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Waits for a chunk and hands its tasks to the sink.
+     *
+     * @return number of tasks in the chunk
+     */
+    private static int deliver(CompletableFuture<List<Task>> chunk, ChunkSink sink) {
+        List<Task> tasks;
+        try {
+            tasks = chunk.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        sink.accept(tasks);
+        return tasks.size();
+    }
+
+    private static Task parseJson(String record, int id, LocalDateTime now) throws IOException {
+        try (JsonParser parser = MAPPER.createParser(record)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("expected a JSON object");
+            }
+            Task read = TaskJsonReader.read(parser, null);
+            return complete(id, read.getDescription(), read.getStatus(), read.getCreatedAt(), read.getUpdatedAt(),
+                    now);
+        }
+    }
+
+    private static Task parseCsv(String record, int id, int[] columns, LocalDateTime now) {
+        List<String> fields = splitCsv(record);
+        String createdAt = field(fields, columns[3]);
+        String updatedAt = field(fields, columns[4]);
+        String status = field(fields, columns[2]);
+        return complete(id,
+                field(fields, columns[1]),
+                status == null ? null : Status.valueOf(status.trim().toUpperCase(Locale.ROOT).replace('-', '_')),
+                parseTime(createdAt),
+                parseTime(updatedAt),
+                now);
+    }
+
+    private static Task complete(int id, String description, Status status, LocalDateTime createdAt,
+                                 LocalDateTime updatedAt, LocalDateTime now) {
+        if (description == null || description.isEmpty()) {
+            throw new IllegalArgumentException("missing description");
+        }
+        LocalDateTime created = createdAt == null ? now : createdAt;
+        return new Task(id, description, status == null ? Status.TODO : status, created,
+                updatedAt == null ? created : updatedAt);
+    }
+
+    /**
+     * @return the field at the given position, or {@code null} if the column is absent or the field empty
+     */
+    private static String field(List<String> fields, int index) {
+        if (index < 0 || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    private static LocalDateTime parseTime(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(text.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid timestamp \"" + text + "\"");
+        }
+    }
+
+    /**
+     * Splits a CSV record into unquoted fields.
+     *
+     * @throws IllegalArgumentException if a quoted field is not closed or followed by other text
+     */
+    private static List<String> splitCsv(String record) {
+        List<String> fields = new ArrayList<>(CSV_COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            if (i < record.length() && record.charAt(i) == '"') {
+                int close = i + 1;
+                while (true) {
+                    int quote = record.indexOf('"', close);
+                    if (quote == -1) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    field.append(record, close, quote);
+                    if (quote + 1 < record.length() && record.charAt(quote + 1) == '"') {
+                        field.append('"');
+                        close = quote + 2;
+                    } else {
+                        i = quote + 1;
+                        break;
+                    }
+                }
+                if (i < record.length() && record.charAt(i) != ',') {
+                    throw new IllegalArgumentException("text after closing quote");
+                }
+            } else {
+                int comma = record.indexOf(',', i);
+                int end = comma == -1 ? record.length() : comma;
+                field.append(record, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            field.setLength(0);
+            if (i >= record.length()) {
+                return fields;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Cuts the input into records: single lines, joined while a CSV quote is open.
+     */
+    private static final class RecordReader {
+
+        private final BufferedReader in;
+
+        private final boolean csv;
+
+        private int line;
+
+        private int recordLine;
+
+        RecordReader(BufferedReader in, Format format) {
+            this.in = in;
+            this.csv = format == Format.CSV;
+        }
+
+        /**
+         * @return the next record, or {@code null} at the end of the input
+         */
+        String next() throws IOException {
+            String text = in.readLine();
+            if (text == null) {
+                return null;
+            }
+            recordLine = ++line;
+            if (!csv || quotes(text) % 2 == 0) {
+                return text;
+            }
+            StringBuilder record = new StringBuilder(text);
+            int quotes = quotes(text);
+            while (quotes % 2 != 0) {
+                String more = in.readLine();
+                if (more == null) {
+                    break;
+                }
+                line++;
+                record.append('\n').append(more);
+                quotes += quotes(more);
+            }
+            return record.toString();
+        }
+
+        /**
+         * @return line number the last record started on
+         */
+        int recordLine() {
+            return recordLine;
+        }
+
+        private static int quotes(String text) {
+            int count = 0;
+            for (int i = text.indexOf('"'); i != -1; i = text.indexOf('"', i + 1)) {
+                count++;
+            }
+            return count;
+        }
+
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.tasktracker;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted indexes of task IDs by creation and by last update time.
+ * <p>
+ * Each index is a skip list of (timestamp, ID) keys, so the tasks within a
+ * time range are found in O(log n + k). Tasks without a timestamp, as found
+ * in files written by hand, are not indexed.
+ * </p>
+ * <p>
+ * The index is safe to read while it is being updated. Updates for the same
+ * task must be serialized by the caller.
+ * </p>
+ */
+public class TimeIndex {
+
+    /**
+     * Timestamp a range query applies to.
+     */
+    public enum Field {
+        CREATED, UPDATED
+    }
+
+    private final NavigableSet<Key> created = new ConcurrentSkipListSet<>();
+
+    private final NavigableSet<Key> updated = new ConcurrentSkipListSet<>();
+
+    private TimeIndex() {
+    }
+
+    /**
+     * Indexes every task.
+     *
+     * @param tasks tasks to index
+     * @return the index
+     */
+    public static TimeIndex build(Collection<Task> tasks) {
+        TimeIndex index = new TimeIndex();
+        for (Task task : tasks) {
+            index.add(task);
+        }
+        return index;
+    }
+
+    /**
+     * Indexes both timestamps of a task.
+     *
+     * @param task task to index
+     */
+    public void add(Task task) {
+        if (task.getCreatedAt() != null) {
+            created.add(new Key(task.getCreatedAt(), task.getId()));
+        }
+        addUpdated(task);
+    }
+
+    /**
+     * Removes both timestamps of a task.
+     *
+     * @param task task to remove, with the timestamps it was indexed with
+     */
+    public void remove(Task task) {
+        if (task.getCreatedAt() != null) {
+            created.remove(new Key(task.getCreatedAt(), task.getId()));
+        }
+        removeUpdated(task);
+    }
+
+    /**
+     * Indexes the last update time of a task.
+     *
+     * @param task task to index
+     */
+    public void addUpdated(Task task) {
+        if (task.getUpdatedAt() != null) {
+            updated.add(new Key(task.getUpdatedAt(), task.getId()));
+        }
+    }
+
+    /**
+     * Removes the last update time of a task, before it changes.
+     *
+     * @param task task to remove, with the update time it was indexed with
+     */
+    public void removeUpdated(Task task) {
+        if (task.getUpdatedAt() != null) {
+            updated.remove(new Key(task.getUpdatedAt(), task.getId()));
+        }
+    }
+
+    /**
+     * Finds the tasks whose timestamp falls within a range.
+     *
+     * @param field timestamp to look at
+     * @param from  inclusive lower bound, or {@code null} for no lower bound
+     * @param to    exclusive upper bound, or {@code null} for no upper bound
+     * @return IDs of the matching tasks, ordered by timestamp then ID
+     */
+    public Iterable<Integer> range(Field field, LocalDateTime from, LocalDateTime to) {
+        NavigableSet<Key> index = field == Field.CREATED ? created : updated;
+        NavigableSet<Key> range;
+        if (from != null && to != null) {
+            range = from.isBefore(to) ? index.subSet(Key.first(from), true, Key.first(to), false) : new ConcurrentSkipListSet<>();
+        } else if (from != null) {
+            range = index.tailSet(Key.first(from), true);
+        } else if (to != null) {
+            range = index.headSet(Key.first(to), false);
+        } else {
+            range = index;
+        }
+        return () -> range.stream().map(Key::id).iterator();
+    }
+
+    /**
+     * Index entry; the ID tells apart tasks sharing a timestamp.
+     *
+     * @param time timestamp
+     * @param id   task ID
+     */
+    private record Key(LocalDateTime time, int id) implements Comparable<Key> {
+
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::time).thenComparingInt(Key::id);
+
+        /**
+         * @return a key sorting before every entry with the given timestamp
+         */
+        static Key first(LocalDateTime time) {
+            return new Key(time, Integer.MIN_VALUE);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+
+    }
+
+}
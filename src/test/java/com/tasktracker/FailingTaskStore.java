@@ -0,0 +1,63 @@
+package com.tasktracker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * JSON store whose writes can be made to fail, as on a full disk.
+ */
+class FailingTaskStore implements TaskStore {
+
+    private final JsonTaskStore json;
+
+    private volatile boolean failing;
+
+    /**
+     * @param filePath JSON file the tasks are kept in
+     */
+    FailingTaskStore(Path filePath) {
+        this.json = new JsonTaskStore(filePath);
+    }
+
+    /**
+     * @param failing {@code true} to make every later write throw
+     */
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    @Override
+    public TaskData load() throws IOException {
+        return json.load();
+    }
+
+    @Override
+    public void save(Task task, TaskData data) throws IOException {
+        fail();
+        json.save(task, data);
+    }
+
+    @Override
+    public void delete(int id, TaskData data) throws IOException {
+        fail();
+        json.delete(id, data);
+    }
+
+    @Override
+    public void saveAll(TaskData data) throws IOException {
+        fail();
+        json.saveAll(data);
+    }
+
+    @Override
+    public boolean isModified() throws IOException {
+        return json.isModified();
+    }
+
+    private void fail() throws IOException {
+        if (failing) {
+            throw new IOException("disk full");
+        }
+    }
+
+}
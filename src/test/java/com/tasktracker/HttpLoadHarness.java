@@ -0,0 +1,125 @@
+package com.tasktracker;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load-test harness for {@link TaskHttpServer}.
+ * <p>
+ * Starts a server on localhost backed by a temporary store, then runs a
+ * number of concurrent clients, each on a virtual thread, for a fixed
+ * duration. Each client sends a mix of list pages, additions and status
+ * changes. Prints the throughput and latency percentiles.
+ * </p>
+ * <p>
+ * Run with:
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.tasktracker.HttpLoadHarness -Dexec.args="<clients> <seconds>"}
+ * </p>
+ */
+public class HttpLoadHarness {
+
+    /**
+     * @param args number of concurrent clients (default 64) and test duration in seconds (default 10)
+     *
+     * @throws Exception if the server cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Path file = Files.createTempFile("tasks-load", ".json");
+        Files.delete(file);
+        TaskRepository repository = new TaskRepository(new JournalTaskStore(file), ReloadPolicy.ON_CHANGE,
+                Duration.ofMillis(2));
+        TaskHttpServer.enableNoDelay();
+        try (TaskHttpServer server = new TaskHttpServer(new InetSocketAddress("localhost", 0), repository);
+             HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            server.start();
+            String base = "http://localhost:" + server.getPort() + "/tasks";
+            for (int i = 0; i < 1000; i++) {
+                client.send(post(base, "{\"description\": \"Seed " + i + "\"}"), HttpResponse.BodyHandlers.discarding());
+            }
+
+            long end = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> run(client, base, end)));
+            }
+
+            List<long[]> latencies = new ArrayList<>();
+            for (Future<long[]> result : results) {
+                latencies.add(result.get());
+            }
+            long[] all = latencies.stream().flatMapToLong(Arrays::stream).toArray();
+            long errors = Arrays.stream(all).filter(latency -> latency < 0).count();
+            long[] sorted = Arrays.stream(all).map(Math::abs).sorted().toArray();
+
+            System.out.printf("clients=%d duration=%ds requests=%d errors=%d%n", clients, seconds, all.length, errors);
+            System.out.printf("throughput=%.0f req/s%n", all.length / (double) seconds);
+            System.out.printf("p50=%.2fms p99=%.2fms max=%.2fms%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".journal"));
+            Files.deleteIfExists(StoreLock.lockPath(file));
+        }
+    }
+
+    /**
+     * Sends requests until the deadline.
+     *
+     * @return latency of every request in nanoseconds, negated for failed requests
+     */
+    private static long[] run(HttpClient client, String base, long end) throws Exception {
+        long[] latencies = new long[1024];
+        int count = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            int roll = random.nextInt(10);
+            HttpRequest request;
+            if (roll < 6) {
+                request = HttpRequest.newBuilder(URI.create(base + "?limit=50&after=" + random.nextInt(1000))).build();
+            } else if (roll < 8) {
+                request = post(base, "{\"description\": \"Load\"}");
+            } else {
+                request = post(base + "/" + (1 + random.nextInt(1000)) + "/done", "");
+            }
+
+            long start = System.nanoTime();
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            long latency = System.nanoTime() - start;
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = status < 400 ? latency : -latency;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static HttpRequest post(String uri, String body) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+}
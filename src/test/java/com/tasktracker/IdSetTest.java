@@ -0,0 +1,55 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdSetTest {
+
+    @Test
+    void addRemoveIterate_matchTreeSet() {
+        IdSet set = new IdSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            int id = random.nextInt(3) == 0 ? random.nextInt() : random.nextInt(20_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), set.remove(id));
+            } else {
+                assertEquals(expected.add(id), set.add(id));
+            }
+        }
+
+        for (int afterId : new int[] {Integer.MIN_VALUE, -101, -1, 0, 63, 64, 4095, 4096, 19_000, Integer.MAX_VALUE}) {
+            assertEquals(new ArrayList<>(expected.tailSet(afterId, false)), toList(set.iterator(afterId)),
+                    "after " + afterId);
+        }
+        for (int id : expected) {
+            assertTrue(set.contains(id));
+        }
+    }
+
+    @Test
+    void emptySet_iteratesNothing() {
+        IdSet set = new IdSet();
+        assertFalse(set.iterator(0).hasNext());
+        set.add(5);
+        set.remove(5);
+        assertFalse(set.iterator(0).hasNext());
+        assertFalse(set.contains(5));
+    }
+
+    private static List<Integer> toList(PrimitiveIterator.OfInt iterator) {
+        List<Integer> ids = new ArrayList<>();
+        iterator.forEachRemaining((int id) -> ids.add(id));
+        return ids;
+    }
+
+}
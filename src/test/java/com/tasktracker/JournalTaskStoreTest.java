@@ -0,0 +1,140 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTaskStoreTest {
+
+    private Path testFile;
+
+    private JournalTaskStore store;
+
+    @BeforeEach
+    void setUp() {
+        testFile = Path.of("testJournal.json");
+        store = new JournalTaskStore(testFile, 3);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(testFile);
+        Files.deleteIfExists(store.getJournalPath());
+        Files.deleteIfExists(StoreLock.lockPath(testFile));
+    }
+
+    @Test
+    void mutationsAppendToJournal() throws Exception {
+        TaskRepository repository = new TaskRepository(store);
+        int id = repository.addTask("Journaled");
+        repository.markDone(id);
+
+        assertFalse(Files.exists(testFile));
+        assertEquals(2, Files.readAllLines(store.getJournalPath()).size());
+    }
+
+    @Test
+    void loadReplaysSnapshotAndJournal() throws Exception {
+        TaskRepository repository = new TaskRepository(store);
+        int first = repository.addTask("First");
+        repository.addTask("Second");
+        repository.addTask("Third");
+        repository.addTask("Fourth");
+        repository.deleteTask(first);
+        repository.updateTask(2, "Second updated");
+
+        assertTrue(Files.exists(testFile));
+
+        TaskRepository reopened = new TaskRepository(new JournalTaskStore(testFile, 3));
+        String json = reopened.getTasks();
+        assertFalse(json.contains("\"First\""));
+        assertTrue(json.contains("Second updated"));
+        assertTrue(json.contains("Fourth"));
+    }
+
+    @Test
+    void truncatedRecordIsIgnored() throws Exception {
+        TaskRepository repository = new TaskRepository(store);
+        repository.addTask("Complete");
+        Files.writeString(store.getJournalPath(), "{\"task\":{\"id\":2,", StandardOpenOption.APPEND);
+
+        String json = new TaskRepository(new JournalTaskStore(testFile, 3)).getTasks();
+        assertTrue(json.contains("Complete"));
+    }
+
+    @Test
+    void truncatedRecordIsDroppedByTheNextAppend() throws Exception {
+        TaskRepository repository = new TaskRepository(store);
+        repository.addTask("Complete");
+        Files.writeString(store.getJournalPath(), "{\"task\":{\"id\":2,", StandardOpenOption.APPEND);
+
+        repository = new TaskRepository(new JournalTaskStore(testFile, 100));
+        repository.addTask("After the crash");
+
+        assertEquals(2, Files.readAllLines(store.getJournalPath()).size());
+        String json = new TaskRepository(new JournalTaskStore(testFile, 100)).getTasks();
+        assertTrue(json.contains("After the crash"));
+    }
+
+    @Test
+    void corruptRecordBeforeTheEndFailsTheLoad() throws Exception {
+        TaskRepository repository = new TaskRepository(new JournalTaskStore(testFile, 100));
+        repository.addTask("First");
+        Files.writeString(store.getJournalPath(), "not a record\n", StandardOpenOption.APPEND);
+        repository = new TaskRepository(new JournalTaskStore(testFile, 100));
+        repository.addTask("Second");
+
+        assertThrows(IOException.class, () -> new JournalTaskStore(testFile, 100).load());
+    }
+
+    @Test
+    void batchIsWrittenAsOneRecord() throws Exception {
+        TaskRepository repository = new TaskRepository(new JournalTaskStore(testFile, 100));
+        repository.applyBatch(List.of(
+                TaskOperation.add("First"),
+                TaskOperation.add("Second"),
+                TaskOperation.markDone(1)));
+
+        assertEquals(1, Files.readAllLines(store.getJournalPath()).size());
+        String json = new TaskRepository(new JournalTaskStore(testFile, 100)).getTasks();
+        assertTrue(json.contains("Second"));
+        assertTrue(json.contains("DONE"));
+    }
+
+    @Test
+    void groupCommitCoalescesConcurrentWrites() throws Exception {
+        TaskRepository repository = new TaskRepository(new JournalTaskStore(testFile, 1000),
+                ReloadPolicy.ON_CHANGE, Duration.ofMillis(20));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            writers.add(executor.submit(() -> {
+                for (int j = 0; j < 5; j++) {
+                    repository.addTask("Grouped");
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+
+        assertTrue(Files.readAllLines(store.getJournalPath()).size() < 40);
+        TaskRepository reopened = new TaskRepository(new JournalTaskStore(testFile, 1000));
+        assertEquals(40, reopened.countByStatus().get(Status.TODO));
+    }
+
+}
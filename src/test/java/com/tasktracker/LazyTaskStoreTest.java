@@ -0,0 +1,157 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyTaskStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void descriptionsStayOnDiskUntilRead() throws Exception {
+        Path meta = directory.resolve("tasks.meta");
+        TaskRepository repository = new TaskRepository(new LazyTaskStore(meta));
+        for (int i = 1; i <= 5; i++) {
+            repository.addTask("Task number " + i);
+        }
+        repository.markDone(2);
+        repository.updateTask(3, "Renamed");
+
+        LazyTaskStore store = new LazyTaskStore(meta, 2);
+        TaskData data = store.load();
+        List<String> resident = new ArrayList<>();
+        data.forEachRow((id, status, createdAt, updatedAt, description, ref) -> {
+            if (description != null) {
+                resident.add(description);
+            }
+        });
+        assertEquals(List.of(), resident);
+        assertEquals(1, data.count(Status.DONE));
+        assertEquals(0, store.getCacheMisses());
+
+        assertEquals("Task number 2", data.byStatus(Status.DONE).get(0).getDescription());
+        assertEquals("Task number 2", data.get(2).getDescription());
+        assertEquals("Renamed", data.get(3).getDescription());
+        assertEquals(2, store.getCacheMisses());
+        assertEquals(1, store.getCacheHits());
+    }
+
+    @Test
+    void statusChangesDoNotRewriteDescriptions() throws Exception {
+        Path meta = directory.resolve("tasks.meta");
+        LazyTaskStore store = new LazyTaskStore(meta);
+        TaskRepository repository = new TaskRepository(store, ReloadPolicy.ON_CHANGE);
+        int id = repository.addTask("A description that is written once");
+        long size = Files.size(store.descriptionPath(0));
+
+        repository.markInProgress(id);
+        repository.markDone(id);
+        assertEquals(size, Files.size(store.descriptionPath(0)));
+
+        repository.updateTask(id, "Changed");
+        assertEquals(size + "Changed".length(), Files.size(store.descriptionPath(0)));
+        assertEquals("Changed", new LazyTaskStore(meta).load().get(id).getDescription());
+    }
+
+    @Test
+    void writeCompactsReplacedDescriptions() throws Exception {
+        Path meta = directory.resolve("tasks.meta");
+        TaskRepository repository = new TaskRepository(new LazyTaskStore(meta), ReloadPolicy.ON_CHANGE);
+        int kept = repository.addTask("Kept");
+        int id = repository.addTask("x");
+        for (int i = 0; i < 5; i++) {
+            repository.updateTask(id, String.valueOf(i).repeat(300_000));
+        }
+        LazyTaskStore store = new LazyTaskStore(meta);
+        assertTrue(Files.size(store.descriptionPath(0)) > 1_500_000);
+        assertFalse(Files.exists(store.descriptionPath(1)));
+
+        assertEquals(id + 1, repository.addTask("After compaction"));
+        assertEquals(300_004 + "After compaction".length(), Files.size(store.descriptionPath(1)));
+        assertTrue(repository.markDone(kept));
+
+        assertFalse(Files.exists(store.descriptionPath(0)));
+        TaskData data = store.load();
+        assertEquals("Kept", data.get(kept).getDescription());
+        assertEquals("4".repeat(300_000), data.get(id).getDescription());
+        assertEquals("After compaction", data.get(id + 1).getDescription());
+    }
+
+    @Test
+    void singleChangesAppendOneRecord() throws Exception {
+        Path meta = directory.resolve("tasks.meta");
+        TaskRepository repository = new TaskRepository(new LazyTaskStore(meta));
+        for (int i = 1; i <= 3; i++) {
+            repository.addTask("Task number " + i);
+        }
+        long size = Files.size(meta);
+
+        assertTrue(repository.markDone(2));
+        assertEquals(size + 29, Files.size(meta));
+        assertTrue(repository.deleteTask(3));
+        assertEquals(size + 2 * 29, Files.size(meta));
+
+        TaskData data = new LazyTaskStore(meta).load();
+        assertEquals(2, data.size());
+        assertEquals(Status.DONE, data.get(2).getStatus());
+        assertEquals("Task number 2", data.get(2).getDescription());
+        assertNull(data.get(3));
+        assertEquals(4, data.getSequence().peek());
+    }
+
+    @Test
+    void staleRecordsAreRewritten() throws Exception {
+        Path meta = directory.resolve("tasks.meta");
+        TaskRepository repository = new TaskRepository(new LazyTaskStore(meta));
+        int id = repository.addTask("Toggled");
+        for (int i = 0; i < 1_100; i++) {
+            assertTrue(i % 2 == 0 ? repository.markDone(id) : repository.markInProgress(id));
+        }
+
+        assertTrue(Files.size(meta) < 100 * 29);
+        assertEquals(Status.IN_PROGRESS, new LazyTaskStore(meta).load().get(id).getStatus());
+    }
+
+    @Test
+    void loadDoesNotWrite() throws Exception {
+        Path meta = directory.resolve("tasks.meta");
+        LazyTaskStore empty = new LazyTaskStore(meta);
+        assertTrue(empty.load().isEmpty());
+        assertFalse(Files.exists(empty.descriptionPath(0)));
+
+        TaskRepository repository = new TaskRepository(new LazyTaskStore(meta));
+        int id = repository.addTask("x");
+        repository.updateTask(id, "a".repeat(2_000_000));
+        repository.updateTask(id, "b");
+        long metaSize = Files.size(meta);
+        long descriptionSize = Files.size(empty.descriptionPath(0));
+
+        assertEquals("b", new LazyTaskStore(meta).load().get(id).getDescription());
+        assertEquals(metaSize, Files.size(meta));
+        assertEquals(descriptionSize, Files.size(empty.descriptionPath(0)));
+        assertFalse(Files.exists(empty.descriptionPath(1)));
+    }
+
+    @Test
+    void convertsFromJson() throws Exception {
+        Path json = directory.resolve("tasks.json");
+        TaskRepository repository = new TaskRepository(json);
+        repository.addTask("From JSON");
+        repository.markDone(1);
+
+        assertEquals(1, TaskStores.convert(json, directory.resolve("tasks.meta")));
+
+        Task task = new LazyTaskStore(directory.resolve("tasks.meta")).load().get(1);
+        assertEquals("From JSON", task.getDescription());
+        assertEquals(Status.DONE, task.getStatus());
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTaskStoreTest {
+
+    private Path testFile;
+
+    private Path jsonFile;
+
+    @BeforeEach
+    void setUp() {
+        testFile = Path.of("testMapped.bin");
+        jsonFile = Path.of("testMapped.json");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(testFile);
+        Files.deleteIfExists(jsonFile);
+        Files.deleteIfExists(StoreLock.lockPath(testFile));
+        Files.deleteIfExists(StoreLock.lockPath(jsonFile));
+    }
+
+    @Test
+    void tasksSurviveReopen() throws Exception {
+        TaskRepository repository = new TaskRepository(new MappedTaskStore(testFile));
+        int id = repository.addTask("Mapped task");
+        repository.addTask("Other task");
+        repository.markDone(id);
+        repository.updateTask(id, "Mapped task, renamed");
+        repository.deleteTask(2);
+
+        Task task = new MappedTaskStore(testFile).read(id);
+        assertEquals("Mapped task, renamed", task.getDescription());
+        assertEquals(Status.DONE, task.getStatus());
+        assertNull(new MappedTaskStore(testFile).read(2));
+        assertEquals(3, new TaskRepository(new MappedTaskStore(testFile)).addTask("Third"));
+    }
+
+    @Test
+    void fileGrowsWhenSlotsRunOut() throws Exception {
+        TaskRepository repository = new TaskRepository(new MappedTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        for (int i = 1; i <= 1500; i++) {
+            repository.addTask("Task " + i);
+        }
+
+        assertEquals(1500, new MappedTaskStore(testFile).load().size());
+        assertEquals("Task 1500", new MappedTaskStore(testFile).read(1500).getDescription());
+    }
+
+    @Test
+    void rewriteLeavesCurrentDataIntactUntilHeaderSwitch() throws Exception {
+        TaskRepository repository = new TaskRepository(new MappedTaskStore(testFile));
+        repository.addTask("Before the rewrite");
+        byte[] header = new byte[MappedTaskStore.HEADER_SIZE];
+        try (InputStream in = Files.newInputStream(testFile)) {
+            assertEquals(header.length, in.readNBytes(header, 0, header.length));
+        }
+
+        MappedTaskStore store = new MappedTaskStore(testFile);
+        TaskData data = store.load();
+        data.put(new Task(data.getSequence().next(), "After the rewrite"));
+        store.saveAll(data);
+        assertEquals(2, new MappedTaskStore(testFile).load().size());
+
+        try (FileChannel file = FileChannel.open(testFile, StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.wrap(header), 0);
+        }
+        TaskData restored = new MappedTaskStore(testFile).load();
+        assertEquals(1, restored.size());
+        assertEquals("Before the rewrite", restored.get(1).getDescription());
+    }
+
+    @Test
+    void readsRetryWhileAnotherStoreWrites() throws Exception {
+        TaskRepository writer = new TaskRepository(new MappedTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        int id = writer.addTask("Renamed 0");
+        Thread writes = new Thread(() -> {
+            for (int i = 1; i <= 300; i++) {
+                writer.updateTask(id, "Renamed " + i);
+                writer.addTask("Task " + i);
+            }
+        });
+        writes.start();
+        MappedTaskStore reader = new MappedTaskStore(testFile);
+        while (writes.isAlive()) {
+            assertTrue(reader.read(id).getDescription().startsWith("Renamed "));
+            assertFalse(reader.load().isEmpty());
+        }
+        writes.join();
+
+        assertEquals("Renamed 300", reader.read(id).getDescription());
+        assertEquals(301, reader.load().size());
+    }
+
+    @Test
+    void readsOnTheWritingStore_doNotDisturbItsWrites() throws Exception {
+        MappedTaskStore store = new MappedTaskStore(testFile);
+        TaskRepository writer = new TaskRepository(store, ReloadPolicy.ON_CHANGE);
+        int id = writer.addTask("Renamed 0");
+        Thread writes = new Thread(() -> {
+            for (int i = 1; i <= 300; i++) {
+                assertTrue(writer.updateTask(id, "Renamed " + i));
+                writer.addTask("Task " + i);
+            }
+        });
+        writes.start();
+        while (writes.isAlive()) {
+            assertTrue(store.read(id).getDescription().startsWith("Renamed "));
+            assertFalse(store.load().isEmpty());
+        }
+        writes.join();
+
+        assertEquals("Renamed 300", store.read(id).getDescription());
+        assertEquals(301, new MappedTaskStore(testFile).load().size());
+    }
+
+    @Test
+    void counterLeftOddByCrashedWriter_isReadUnderLock() throws Exception {
+        new TaskRepository(new MappedTaskStore(testFile)).addTask("Survivor");
+        setGeneration(getGeneration() | 1);
+
+        assertEquals("Survivor", new MappedTaskStore(testFile).read(1).getDescription());
+        TaskRepository repository = new TaskRepository(new MappedTaskStore(testFile));
+        assertTrue(repository.markDone(1));
+        assertEquals(0, getGeneration() & 1);
+    }
+
+    @Test
+    void corruptSlot_failsWithIOException() throws Exception {
+        new TaskRepository(new MappedTaskStore(testFile)).addTask("Corrupted");
+        try (FileChannel file = FileChannel.open(testFile, StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.wrap(new byte[] {42}), MappedTaskStore.HEADER_SIZE + 4);
+        }
+
+        IOException error = assertThrows(IOException.class, () -> new MappedTaskStore(testFile).load());
+        assertTrue(error.getMessage().contains("Status 42"), error.getMessage());
+    }
+
+    private long getGeneration() throws IOException {
+        ByteBuffer generation = ByteBuffer.allocate(Long.BYTES);
+        try (FileChannel file = FileChannel.open(testFile, StandardOpenOption.READ)) {
+            file.read(generation, MappedTaskStore.GENERATION);
+        }
+        return generation.getLong(0);
+    }
+
+    private void setGeneration(long generation) throws IOException {
+        try (FileChannel file = FileChannel.open(testFile, StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.allocate(Long.BYTES).putLong(0, generation), MappedTaskStore.GENERATION);
+        }
+    }
+
+    @Test
+    void convertsFromAndToJson() throws Exception {
+        TaskRepository json = new TaskRepository(jsonFile);
+        json.addTask("Converted");
+        json.markInProgress(json.addTask("Converted in progress"));
+
+        assertEquals(2, TaskStores.convert(jsonFile, testFile));
+        Files.delete(jsonFile);
+        assertEquals(2, TaskStores.convert(testFile, jsonFile));
+
+        String tasks = new TaskRepository(jsonFile).getTasksByStatus(Status.IN_PROGRESS);
+        assertTrue(tasks.contains("Converted in progress"));
+    }
+
+}
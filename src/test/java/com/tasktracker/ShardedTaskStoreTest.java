@@ -0,0 +1,82 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedTaskStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writeOnlyRewritesTouchedShard() throws Exception {
+        Path base = directory.resolve("tasks.json");
+        TaskRepository repository = new TaskRepository(new ShardedTaskStore(base, 4), ReloadPolicy.ON_CHANGE);
+        for (int i = 1; i <= 8; i++) {
+            repository.addTask("Task " + i);
+        }
+        ShardedTaskStore store = new ShardedTaskStore(base, 4);
+        String[] before = new String[4];
+        for (int i = 0; i < 4; i++) {
+            before[i] = Files.readString(store.shardPath(i));
+        }
+
+        repository.markDone(6);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i != 2, before[i].equals(Files.readString(store.shardPath(i))), "shard " + i);
+        }
+        assertTrue(Files.readString(store.shardPath(2)).contains("DONE"));
+        TaskData data = store.load();
+        assertEquals(8, data.size());
+        assertEquals(9, data.getSequence().peek());
+        assertEquals(Status.DONE, data.get(6).getStatus());
+    }
+
+    @Test
+    void fewerShardsRewriteLayoutOnNextWrite() throws Exception {
+        Path base = directory.resolve("tasks.json");
+        TaskRepository wide = new TaskRepository(new ShardedTaskStore(base, 4));
+        for (int i = 1; i <= 6; i++) {
+            wide.addTask("Task " + i);
+        }
+
+        ShardedTaskStore narrow = new ShardedTaskStore(base, 2);
+        TaskRepository repository = new TaskRepository(narrow);
+        assertEquals(7, repository.addTask("Task 7"));
+
+        assertFalse(Files.exists(narrow.shardPath(2)));
+        assertFalse(Files.exists(narrow.shardPath(3)));
+        TaskData reloaded = new ShardedTaskStore(base, 2).load();
+        assertEquals(7, reloaded.size());
+        assertEquals(List.of(1, 3, 5, 7), reloaded.select(id -> id % 2 == 1).stream().map(Task::getId).sorted().toList());
+        assertTrue(Files.readString(narrow.shardPath(1)).contains("Task 7"));
+        assertFalse(Files.readString(narrow.shardPath(0)).contains("Task 7"));
+    }
+
+    @Test
+    void convertsFromJson() throws Exception {
+        Path json = directory.resolve("tasks.json");
+        TaskRepository repository = new TaskRepository(json);
+        repository.addTask("First");
+        repository.markDone(repository.addTask("Second"));
+
+        assertEquals(2, TaskStores.convert(json, directory.resolve("tasks.shards")));
+
+        ShardedTaskStore store = new ShardedTaskStore(json, ShardedTaskStore.DEFAULT_SHARD_COUNT);
+        assertTrue(Files.readString(store.shardPath(2)).contains("Second"));
+        TaskRepository sharded = new TaskRepository(store, ReloadPolicy.ON_CHANGE);
+        assertEquals(Status.DONE, sharded.listPage(null, 0, 10).get(1).getStatus());
+        assertEquals(3, sharded.addTask("Third"));
+        assertTrue(sharded.deleteTask(1));
+        assertFalse(Files.readString(store.shardPath(1)).contains("First"));
+        assertEquals(2, new ShardedTaskStore(json, ShardedTaskStore.DEFAULT_SHARD_COUNT).load().size());
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskDaemonTest {
+
+    private Path testFile;
+
+    private Path socketPath;
+
+    private TaskDaemon daemon;
+
+    private Thread serveThread;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        testFile = Path.of("testDaemon.json");
+        socketPath = Path.of("testDaemon.sock");
+        TaskRepository repository = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        daemon = new TaskDaemon(socketPath, repository);
+        serveThread = Thread.ofVirtual().start(() -> {
+            try {
+                daemon.serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        daemon.close();
+        serveThread.join();
+        Files.deleteIfExists(testFile);
+        Files.deleteIfExists(StoreLock.lockPath(testFile));
+    }
+
+    @Test
+    void forwardsCommandsToDaemon() throws Exception {
+        assertEquals("Task added successfully (ID: 1)", send("add", "Through the socket").trim());
+        assertEquals("Task marked as done.", send("mark-done", "1").trim());
+        assertTrue(send("list", "done").contains("Through the socket"));
+        assertTrue(new TaskRepository(testFile).getTasks().contains("Through the socket"));
+    }
+
+    @Test
+    void servesConcurrentClients() throws Exception {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<String>> replies = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            replies.add(executor.submit(() -> send("add", "Concurrent")));
+        }
+        for (Future<String> reply : replies) {
+            assertTrue(reply.get().startsWith("Task added successfully"));
+        }
+        executor.shutdown();
+
+        assertTrue(send("count").contains("TODO: 20"));
+    }
+
+    @Test
+    void watchStreamsChangesUntilDaemonCloses() throws Exception {
+        ByteArrayOutputStream watched = new ByteArrayOutputStream();
+        Thread watcher = Thread.ofVirtual().start(() -> {
+            try {
+                TaskClient.forward(socketPath, new String[]{"watch", "--after", "0"}, watched);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        send("add", "Watched");
+        send("mark-done", "1");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (watched.toString().lines().count() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<String> lines = watched.toString().lines().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"sequence\":1,\"type\":\"CREATED\",\"id\":1"));
+        assertTrue(lines.get(1).contains("\"type\":\"STATUS_CHANGED\""));
+        assertTrue(lines.get(1).contains("\"status\":\"DONE\""));
+
+        daemon.close();
+        watcher.join(5_000);
+        assertFalse(watcher.isAlive());
+    }
+
+    @Test
+    void localCommands_areRefused() throws Exception {
+        for (String command : new String[] {"import", "export", "convert", "batch", "serve", "http"}) {
+            assertTrue(send(command, "tasks.csv").startsWith("Error: the daemon does not run \"" + command + "\""),
+                    command);
+        }
+        assertFalse(Files.exists(Path.of("tasks.csv")));
+    }
+
+    @Test
+    void secondDaemon_doesNotStealTheSocket() throws Exception {
+        TaskRepository other = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        assertThrows(IOException.class, () -> new TaskDaemon(socketPath, other));
+
+        assertEquals("Task added successfully (ID: 1)", send("add", "Still the first daemon").trim());
+    }
+
+    @Test
+    void staleSocketFile_isReplaced() throws Exception {
+        daemon.close();
+        try (ServerSocketChannel crashed = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            crashed.bind(UnixDomainSocketAddress.of(socketPath));
+        }
+        assertTrue(Files.exists(socketPath));
+
+        TaskRepository repository = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        try (TaskDaemon restarted = new TaskDaemon(socketPath, repository)) {
+            Thread serving = Thread.ofVirtual().start(() -> {
+                try {
+                    restarted.serve();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertEquals("Task added successfully (ID: 1)", send("add", "After a crash").trim());
+            restarted.close();
+            serving.join();
+        }
+    }
+
+    @Test
+    void forwardFailsWithoutDaemon() throws Exception {
+        daemon.close();
+
+        assertFalse(TaskClient.forward(socketPath, new String[]{"count"}, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void invalidArgumentCount_isRejected() throws Exception {
+        assertEquals("Error: invalid argument count -1", sendCount(-1).trim());
+        assertEquals("Error: invalid argument count " + Integer.MAX_VALUE, sendCount(Integer.MAX_VALUE).trim());
+        assertEquals("Task added successfully (ID: 1)", send("add", "Still serving").trim());
+    }
+
+    private String sendCount(int count) throws Exception {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+            request.writeInt(count);
+            request.flush();
+            channel.shutdownOutput();
+            return new String(Channels.newInputStream(channel).readAllBytes());
+        }
+    }
+
+    private String send(String... args) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(TaskClient.forward(socketPath, args, out));
+        return out.toString();
+    }
+
+}
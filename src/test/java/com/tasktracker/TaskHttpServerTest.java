@@ -0,0 +1,110 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskHttpServerTest {
+
+    private Path testFile;
+
+    private TaskHttpServer server;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        testFile = Path.of("testHttp.json");
+        TaskRepository repository = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        server = new TaskHttpServer(new InetSocketAddress("localhost", 0), repository);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+        Files.deleteIfExists(testFile);
+        Files.deleteIfExists(StoreLock.lockPath(testFile));
+    }
+
+    @Test
+    void crudOverHttp() throws Exception {
+        HttpResponse<String> added = send("POST", "/tasks", "{\"description\": \"Over HTTP\"}");
+        assertEquals(201, added.statusCode());
+        assertEquals("{\"id\":1}", added.body());
+
+        assertEquals(204, send("PUT", "/tasks/1", "{\"description\": \"Renamed\"}").statusCode());
+        assertEquals(204, send("POST", "/tasks/1/done", "").statusCode());
+        assertEquals(404, send("POST", "/tasks/9/done", "").statusCode());
+        assertTrue(send("GET", "/tasks?status=done", null).body().contains("Renamed"));
+        assertTrue(send("GET", "/tasks/count", null).body().contains("\"DONE\":1"));
+
+        assertEquals(204, send("DELETE", "/tasks/1", null).statusCode());
+        assertEquals("[]", send("GET", "/tasks", null).body());
+    }
+
+    @Test
+    void listIsPaginated() throws Exception {
+        send("POST", "/tasks/batch", "add One\nadd Two\nadd Three\n");
+
+        HttpResponse<String> first = send("GET", "/tasks?limit=2", null);
+        assertEquals("2", first.headers().firstValue("X-Next-After").orElseThrow());
+        assertTrue(first.body().contains("One") && first.body().contains("Two"));
+
+        HttpResponse<String> second = send("GET", "/tasks?limit=2&after=2", null);
+        assertTrue(second.headers().firstValue("X-Next-After").isEmpty());
+        assertTrue(second.body().contains("Three") && !second.body().contains("One"));
+    }
+
+    @Test
+    void rejectsInvalidRequests() throws Exception {
+        assertEquals(400, send("POST", "/tasks", "{}").statusCode());
+        assertEquals(400, send("POST", "/tasks", "not json").statusCode());
+        assertEquals(400, send("GET", "/tasks?status=later", null).statusCode());
+        assertEquals(405, send("PATCH", "/tasks", "").statusCode());
+    }
+
+    @Test
+    void persistFailure_isServerError() throws Exception {
+        Path failingFile = Path.of("testHttpFailing.json");
+        FailingTaskStore store = new FailingTaskStore(failingFile);
+        try (TaskHttpServer failing = new TaskHttpServer(new InetSocketAddress("localhost", 0),
+                new TaskRepository(store, ReloadPolicy.ON_CHANGE))) {
+            failing.start();
+            server.close();
+            server = failing;
+            assertEquals(201, send("POST", "/tasks", "{\"description\": \"Saved\"}").statusCode());
+
+            store.setFailing(true);
+            assertEquals(500, send("POST", "/tasks", "{\"description\": \"Lost\"}").statusCode());
+            assertEquals(500, send("PUT", "/tasks/1", "{\"description\": \"Lost\"}").statusCode());
+            assertEquals(500, send("POST", "/tasks/1/done", "").statusCode());
+            assertEquals(500, send("DELETE", "/tasks/1", null).statusCode());
+            HttpResponse<String> batch = send("POST", "/tasks/batch", "add Lost\nmark-done 1\n");
+            assertEquals(500, batch.statusCode());
+            assertTrue(batch.body().contains("error"));
+            assertEquals(404, send("POST", "/tasks/9/done", "").statusCode());
+        } finally {
+            Files.deleteIfExists(failingFile);
+            Files.deleteIfExists(StoreLock.lockPath(failingFile));
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+}
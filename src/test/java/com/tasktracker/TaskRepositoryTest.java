@@ -4,8 +4,19 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +35,7 @@ class TaskRepositoryTest {
     @AfterEach
     void tearDown() throws Exception {
         Files.deleteIfExists(testFile);
+        Files.deleteIfExists(StoreLock.lockPath(testFile));
     }
 
     @Test
@@ -120,4 +132,456 @@ class TaskRepositoryTest {
         assertFalse(marked);
     }
 
-}
\ No newline at end of file
+    @Test
+    void cachedRepository_seesChangesFromOtherInstances() throws Exception {
+        TaskRepository cached = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        cached.addTask("Cached task");
+
+        repository.addTask("Added elsewhere with a longer description");
+
+        String json = cached.getTasks();
+        assertTrue(json.contains("Cached task"));
+        assertTrue(json.contains("Added elsewhere"));
+    }
+
+    @Test
+    void addTask_doesNotReuseDeletedIds() {
+        repository.addTask("First");
+        int second = repository.addTask("Second");
+        repository.deleteTask(second);
+
+        int third = new TaskRepository(testFile).addTask("Third");
+        assertEquals(3, third);
+    }
+
+    @Test
+    void addTask_readsLegacyArrayFile() throws Exception {
+        Files.writeString(testFile, """
+                [ {
+                  "id" : 7,
+                  "description" : "Legacy",
+                  "status" : "TODO",
+                  "createdAt" : "2025-01-01T12:00:00",
+                  "updatedAt" : "2025-01-01T12:00:00"
+                } ]
+                """);
+
+        assertEquals(8, repository.addTask("After legacy"));
+        assertTrue(repository.getTasks().contains("Legacy"));
+    }
+
+    @Test
+    void compressedStore_isSmallerAndReadableByEitherStore() throws Exception {
+        for (int i = 1; i <= 200; i++) {
+            repository.addTask("Task number " + i);
+        }
+        long indented = Files.size(testFile);
+
+        TaskRepository compressed = new TaskRepository(new JsonTaskStore(testFile, true));
+        compressed.markDone(5);
+        byte[] content = Files.readAllBytes(testFile);
+        assertEquals((byte) 0x1f, content[0]);
+        assertEquals((byte) 0x8b, content[1]);
+        assertTrue(content.length * 5 < indented, content.length + " vs " + indented);
+
+        assertEquals(201, repository.addTask("Back to indented JSON"));
+        assertTrue(repository.getTasksByStatus(Status.DONE).contains("Task number 5"));
+        assertEquals('{', Files.readString(testFile).charAt(0));
+    }
+
+    @Test
+    void countByStatus() {
+        int first = repository.addTask("First");
+        int second = repository.addTask("Second");
+        repository.addTask("Third");
+        repository.markInProgress(first);
+        repository.markDone(second);
+        repository.markDone(first);
+
+        EnumMap<Status, Integer> counts = repository.countByStatus();
+        assertEquals(1, counts.get(Status.TODO));
+        assertEquals(0, counts.get(Status.IN_PROGRESS));
+        assertEquals(2, counts.get(Status.DONE));
+    }
+
+    @Test
+    void writeTasks_streamsMatchingTasks() throws Exception {
+        repository.addTask("Streamed todo");
+        int done = repository.addTask("Streamed done");
+        repository.markDone(done);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = repository.writeTasks(out, Status.DONE, true);
+
+        String json = out.toString();
+        assertEquals(1, written);
+        assertTrue(json.startsWith("[{"));
+        assertTrue(json.contains("Streamed done"));
+        assertFalse(json.contains("Streamed todo"));
+    }
+
+    @Test
+    void writeTasks_writesNothingWhenEmpty() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, repository.writeTasks(out, null, false));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void scan_onlyBuildsMatchingTasks() throws Exception {
+        repository.addTask("Scanned todo");
+        int done = repository.addTask("Scanned done");
+        repository.markDone(done);
+
+        List<Task> scanned = new ArrayList<>();
+        new JsonTaskStore(testFile).scan(Status.TODO, scanned::add);
+
+        assertEquals(1, scanned.size());
+        assertEquals("Scanned todo", scanned.get(0).getDescription());
+        assertNotNull(scanned.get(0).getCreatedAt());
+    }
+
+    @Test
+    void concurrentWrites_areNotLost() throws Exception {
+        TaskRepository shared = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.submit(() -> shared.markDone(shared.addTask("Concurrent"))));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(200, shared.countByStatus().get(Status.DONE));
+        assertEquals(200, new TaskRepository(testFile).countByStatus().get(Status.DONE));
+    }
+
+    @Test
+    void saveAll_refusesToOverwriteConcurrentWrite() throws Exception {
+        JsonTaskStore first = new JsonTaskStore(testFile);
+        JsonTaskStore second = new JsonTaskStore(testFile);
+        TaskData firstData = first.load();
+        TaskData secondData = second.load();
+
+        secondData.put(new Task(secondData.getSequence().next(), "Written by second"));
+        second.saveAll(secondData);
+
+        firstData.put(new Task(firstData.getSequence().next(), "Written by first"));
+        assertThrows(ConcurrentUpdateException.class, () -> first.saveAll(firstData));
+    }
+
+    @Test
+    void writesFromSeparateRepositories_areRetriedNotLost() throws Exception {
+        TaskRepository other = new TaskRepository(testFile);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> first = executor.submit(() -> {
+            for (int i = 0; i < 25; i++) {
+                repository.addTask("From first");
+            }
+        });
+        Future<?> second = executor.submit(() -> {
+            for (int i = 0; i < 25; i++) {
+                other.addTask("From second");
+            }
+        });
+        first.get();
+        second.get();
+        executor.shutdown();
+
+        assertEquals(50, repository.countByStatus().get(Status.TODO));
+    }
+
+    @Test
+    void applyBatch_appliesOperationsInOrder() {
+        List<OperationResult> results = repository.applyBatch(List.of(
+                TaskOperation.parse("add \"First\""),
+                TaskOperation.parse("add Second task"),
+                TaskOperation.parse("mark-done 1"),
+                TaskOperation.parse("delete 2"),
+                TaskOperation.parse("update 7 \"Missing\"")));
+
+        assertEquals(5, results.size());
+        assertEquals(1, results.get(0).id());
+        assertEquals(2, results.get(1).id());
+        assertTrue(results.get(2).success());
+        assertTrue(results.get(3).success());
+        assertFalse(results.get(4).success());
+
+        TaskRepository reopened = new TaskRepository(testFile);
+        assertEquals(1, reopened.countByStatus().get(Status.DONE));
+        assertEquals(0, reopened.countByStatus().get(Status.TODO));
+        assertEquals(3, reopened.addTask("After batch"));
+    }
+
+    @Test
+    void parseOperation_rejectsInvalidLines() {
+        assertThrows(IllegalArgumentException.class, () -> TaskOperation.parse("mark-done abc"));
+        assertThrows(IllegalArgumentException.class, () -> TaskOperation.parse("list"));
+        assertEquals("Buy milk", TaskOperation.parse("update 3 \"Buy milk\"").description());
+    }
+
+    @Test
+    void writeTasks_pagesInIdOrder() throws Exception {
+        for (int i = 1; i <= 10; i++) {
+            repository.addTask("Task " + i);
+        }
+        repository.markDone(4);
+        repository.markDone(7);
+        repository.markDone(9);
+
+        List<Task> page = repository.listPage(null, 3, 4);
+        assertEquals(List.of(4, 5, 6, 7), page.stream().map(Task::getId).toList());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, repository.writeTasks(out, Status.DONE, 4, 2, true));
+        assertTrue(out.toString().contains("Task 7") && out.toString().contains("Task 9"));
+        assertEquals(0, repository.writeTasks(new ByteArrayOutputStream(), Status.DONE, 9, 2, true));
+        assertEquals(7, repository.countByStatus().get(Status.TODO));
+    }
+
+    @Test
+    void search_matchesAllTermsAndPrefixes() {
+        TaskRepository cached = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        cached.addTask("Buy milk and bread");
+        cached.addTask("Buy a new keyboard");
+        cached.addTask("Write quarterly report");
+
+        assertEquals(List.of(1, 2), ids(cached.search("buy", 10)));
+        assertEquals(List.of(1), ids(cached.search("BUY mil*", 10)));
+        assertEquals(List.of(), ids(cached.search("buy report", 10)));
+
+        cached.updateTask(3, "Buy report binder");
+        cached.deleteTask(1);
+        cached.addTask("Buy milk again");
+        assertEquals(List.of(2, 3), ids(cached.search("buy", 2)));
+        assertEquals(List.of(4), ids(cached.search("milk", 10)));
+        assertEquals(List.of(), ids(cached.search("quarterly", 10)));
+    }
+
+    @Test
+    void search_reusesPersistedIndexOnlyWhileCurrent() throws Exception {
+        Path indexPath = Path.of("testFile.json.idx");
+        try {
+            repository.setSearchIndexPath(indexPath);
+            repository.addTask("Persisted index");
+            assertEquals(List.of(1), ids(repository.search("persist*", 10)));
+            assertTrue(Files.exists(indexPath));
+
+            TaskRepository other = new TaskRepository(testFile);
+            other.updateTask(1, "Renamed elsewhere");
+
+            assertEquals(List.of(), ids(repository.search("persisted", 10)));
+            assertEquals(List.of(1), ids(repository.search("renamed", 10)));
+        } finally {
+            Files.deleteIfExists(indexPath);
+        }
+    }
+
+    @Test
+    void listByTime_followsCreationAndUpdateTimes() throws Exception {
+        TaskRepository cached = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        cached.addTask("First");
+        cached.addTask("Second");
+        LocalDateTime checkpoint = LocalDateTime.now();
+        Thread.sleep(2);
+        cached.addTask("Third");
+
+        assertEquals(List.of(1, 2), ids(cached.listByTime(TimeIndex.Field.CREATED, null, checkpoint, null, 10)));
+        assertEquals(List.of(3), ids(cached.listByTime(TimeIndex.Field.UPDATED, checkpoint, null, null, 10)));
+
+        Thread.sleep(2);
+        cached.markDone(1);
+        Thread.sleep(2);
+        cached.updateTask(2, "Second renamed");
+        assertEquals(List.of(3, 1, 2), ids(cached.listByTime(TimeIndex.Field.UPDATED, checkpoint, null, null, 10)));
+        assertEquals(List.of(1), ids(cached.listByTime(TimeIndex.Field.UPDATED, checkpoint, null, Status.DONE, 10)));
+        assertEquals(List.of(1, 2), ids(cached.listByTime(TimeIndex.Field.CREATED, null, checkpoint, null, 10)));
+
+        cached.deleteTask(3);
+        assertEquals(List.of(1), ids(cached.listByTime(TimeIndex.Field.UPDATED, checkpoint, null, null, 1)));
+    }
+
+    @Test
+    void metrics_countOperationsPhasesAndBytes() throws Exception {
+        repository.addTask("Measured");
+        repository.markDone(1);
+        repository.getTasks();
+
+        TaskMetrics metrics = repository.getMetrics();
+        assertEquals(1, metrics.operation(TaskMetrics.Operation.ADD).getCount());
+        assertEquals(1, metrics.operation(TaskMetrics.Operation.MARK_DONE).getCount());
+        assertEquals(1, metrics.operation(TaskMetrics.Operation.LIST).getCount());
+        assertEquals(3, metrics.phase(TaskMetrics.Phase.LOAD).getCount());
+        assertEquals(2, metrics.phase(TaskMetrics.Phase.PERSIST).getCount());
+        assertTrue(metrics.getIo().getBytesRead() > 0);
+        assertEquals(Files.size(testFile) * 2, metrics.getIo().getBytesWritten(), Files.size(testFile));
+    }
+
+    @Test
+    void latencyHistogram_reportsPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+        assertEquals(500, histogram.getP50Micros(), 500 * 0.07);
+        assertEquals(990, histogram.getP99Micros(), 990 * 0.07);
+        assertEquals(1000, histogram.getMaxMicros(), 0.001);
+        for (long value : new long[]{0, 1, 31, 32, 1_000_003, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.highestEquivalent(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestEquivalent(index - 1) < value);
+        }
+    }
+
+    @Test
+    void changeFeed_publishesNumberedEventsAndResumes() throws Exception {
+        repository.addTask("Watched");
+        repository.updateTask(1, "Renamed");
+        repository.markDone(1);
+        repository.applyBatch(List.of(TaskOperation.parse("add \"Batched\""), TaskOperation.parse("delete 1")));
+
+        LinkedBlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        repository.getChangeFeed().after(2).subscribe(collector(received));
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TaskEvent event = (TaskEvent) received.poll(5, TimeUnit.SECONDS);
+            events.add(event.sequence() + " " + event.type() + " " + event.id());
+        }
+        assertEquals(List.of("3 STATUS_CHANGED 1", "4 CREATED 2", "5 DELETED 1"), events);
+
+        repository.markInProgress(2);
+        TaskEvent live = (TaskEvent) received.poll(5, TimeUnit.SECONDS);
+        assertEquals(6, live.sequence());
+        assertEquals(Status.IN_PROGRESS, live.task().getStatus());
+        assertFalse(repository.markDone(99));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void changeFeed_failsSubscribersThatFellBehind() throws Exception {
+        ChangeFeed feed = new ChangeFeed(2);
+        for (int i = 1; i <= 3; i++) {
+            feed.publish(TaskEvent.Type.CREATED, new Task(i, "Task " + i));
+        }
+
+        LinkedBlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        feed.after(0).subscribe(collector(received));
+        assertInstanceOf(IllegalStateException.class, received.poll(5, TimeUnit.SECONDS));
+
+        feed.after(1).subscribe(collector(received));
+        assertEquals(2, ((TaskEvent) received.poll(5, TimeUnit.SECONDS)).sequence());
+        assertEquals(3, ((TaskEvent) received.poll(5, TimeUnit.SECONDS)).sequence());
+    }
+
+    @Test
+    void failedPersist_isNotKeptInMemory() throws Exception {
+        FailingTaskStore store = new FailingTaskStore(testFile);
+        TaskRepository failingRepository = new TaskRepository(store, ReloadPolicy.ON_CHANGE);
+        int id = failingRepository.addTask("Persisted");
+
+        store.setFailing(true);
+        assertEquals(-1, failingRepository.addTask("Lost"));
+        assertFalse(failingRepository.markDone(id));
+        assertFalse(failingRepository.deleteTask(id));
+        store.setFailing(false);
+
+        List<Task> tasks = failingRepository.listPage(null, 0, 10);
+        assertEquals(1, tasks.size());
+        assertEquals(Status.TODO, tasks.get(0).getStatus());
+    }
+
+    @Test
+    void writeTasks_servesUnchangedListsFromCacheAndInvalidatesByStatus() throws Exception {
+        TaskRepository cached = new TaskRepository(new JsonTaskStore(testFile), ReloadPolicy.ON_CHANGE);
+        cached.addTask("First");
+        cached.addTask("Second");
+        cached.markDone(2);
+        ListCache cache = cached.getListCache();
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        assertEquals(1, cached.writeTasks(first, Status.TODO, false));
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        assertEquals(1, cached.writeTasks(second, Status.TODO, false));
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        assertEquals(1, cache.getHitCount());
+
+        cached.markDone(1);
+        ByteArrayOutputStream todo = new ByteArrayOutputStream();
+        assertEquals(0, cached.writeTasks(todo, Status.TODO, false));
+        assertEquals(0, todo.size());
+        assertEquals(1, cache.getHitCount());
+
+        String done = cached.getTasksByStatus(Status.DONE);
+        assertTrue(done.contains("First") && done.contains("Second"), done);
+        assertEquals(done, cached.getTasksByStatus(Status.DONE));
+        cached.addTask("Third");
+        assertEquals(done, cached.getTasksByStatus(Status.DONE));
+        assertEquals(3, cache.getHitCount());
+        assertTrue(cached.getTasks().contains("Third"));
+    }
+
+    @Test
+    void listCache_evictsLeastRecentlyUsedWithinBudget() throws Exception {
+        ListCache cache = new ListCache(80);
+        for (int i = 0; i <= 8; i++) {
+            ListCache.Capture capture = cache.capture(new ByteArrayOutputStream());
+            capture.write(new byte[10]);
+            cache.put(new ListCache.Key(null, i, 10, true), 0, capture, 1);
+            if (i == 7) {
+                assertNotNull(cache.get(new ListCache.Key(null, 0, 10, true), 0));
+            }
+        }
+        ListCache.Capture tooLarge = cache.capture(new ByteArrayOutputStream());
+        tooLarge.write(new byte[11]);
+        cache.put(new ListCache.Key(null, 9, 10, true), 0, tooLarge, 1);
+
+        assertEquals(8, cache.getEntryCount());
+        assertEquals(80, cache.getByteCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(new ListCache.Key(null, 9, 10, true), 0));
+        assertNotNull(cache.get(new ListCache.Key(null, 8, 10, true), 0));
+        assertNull(cache.get(new ListCache.Key(null, 1, 10, true), 0));
+        assertNull(cache.get(new ListCache.Key(null, 0, 10, true), 1));
+    }
+
+    /**
+     * @return a subscriber requesting one event at a time and queueing events and errors
+     */
+    private static Flow.Subscriber<TaskEvent> collector(LinkedBlockingQueue<Object> received) {
+        return new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(TaskEvent event) {
+                received.add(event);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                received.add(error);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).toList();
+    }
+
+}
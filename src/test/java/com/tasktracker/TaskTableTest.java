@@ -0,0 +1,66 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskTableTest {
+
+    @Test
+    void putGetRemove_matchHashMap() {
+        TaskTable table = new TaskTable(0);
+        Map<Integer, Task> expected = new HashMap<>();
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        for (int i = 0; i < 50_000; i++) {
+            // Multiples of 1024 collide in the low bits and exercise backward-shift deletion.
+            int id = random.nextBoolean() ? random.nextInt(2_000) : random.nextInt(64) * 1024;
+            if (random.nextInt(3) == 0) {
+                Task removed = table.remove(id);
+                Task previous = expected.remove(id);
+                assertEquals(previous == null, removed == null);
+            } else {
+                Task task = new Task(id, "Task " + i, Status.values()[i % 3], base.plusNanos(i), base.plusSeconds(i));
+                table.put(task);
+                expected.put(id, task);
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (Task task : expected.values()) {
+            assertEquals(task.toString(), table.get(task.getId()).toString());
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (Task task : table.values()) {
+            ids.add(task.getId());
+        }
+        assertEquals(expected.size(), ids.size());
+        assertTrue(ids.containsAll(expected.keySet()));
+        assertNull(table.get(-1));
+    }
+
+    @Test
+    void update_writesBackChangesAndKeepsNullTimestamps() {
+        TaskTable table = new TaskTable(0);
+        table.put(new Task(7, "Hand-written", Status.TODO, null, null));
+
+        Task view = table.get(7);
+        assertNull(view.getCreatedAt());
+        view.setStatus(Status.DONE);
+        assertEquals(Status.TODO, table.get(7).getStatus());
+
+        assertTrue(table.update(view));
+        assertEquals(Status.DONE, table.get(7).getStatus());
+        assertEquals(view.getUpdatedAt(), table.get(7).getUpdatedAt());
+        assertFalse(table.update(new Task(8, "Missing")));
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.tasktracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskTransferTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void exportThenImport_roundTripsBothFormats() throws Exception {
+        TaskRepository source = new TaskRepository(directory.resolve("source.json"));
+        source.addTask("Plain");
+        source.addTask("Comma, \"quotes\"\nand a second line");
+        source.markDone(2);
+
+        for (TaskTransfer.Format format : TaskTransfer.Format.values()) {
+            StringWriter exported = new StringWriter();
+            assertEquals(2, source.exportTasks(exported, format));
+
+            TaskRepository target = new TaskRepository(directory.resolve(format + ".json"));
+            target.addTask("Already there");
+            assertEquals(2, target.importTasks(new BufferedReader(new StringReader(exported.toString())), format));
+
+            List<Task> tasks = new TaskRepository(directory.resolve(format + ".json")).listPage(null, 0, 10);
+            assertEquals(3, tasks.size(), format.name());
+            Task imported = tasks.get(2);
+            assertEquals(3, imported.getId());
+            assertEquals("Comma, \"quotes\"\nand a second line", imported.getDescription());
+            assertEquals(Status.DONE, imported.getStatus());
+            assertEquals(source.listPage(Status.DONE, 0, 1).get(0).getCreatedAt(), imported.getCreatedAt());
+        }
+    }
+
+    @Test
+    void importTasks_assignsIdsInInputOrderAcrossChunks() throws Exception {
+        int count = TaskTransfer.CHUNK_SIZE * 3 + 7;
+        StringBuilder csv = new StringBuilder("status,description,ignored\n");
+        for (int i = 1; i <= count; i++) {
+            csv.append(i % 2 == 0 ? "in-progress" : "").append(",Row ").append(i).append(",x\n");
+        }
+
+        TaskRepository repository = new TaskRepository(directory.resolve("tasks.json"));
+        assertEquals(count, repository.importTasks(new BufferedReader(new StringReader(csv.toString())),
+                TaskTransfer.Format.CSV));
+
+        List<Task> tasks = new ArrayList<>(new TaskRepository(directory.resolve("tasks.json"))
+                .listPage(null, 0, Integer.MAX_VALUE));
+        assertEquals(count, tasks.size());
+        for (int i = 1; i <= count; i++) {
+            Task task = tasks.get(i - 1);
+            assertEquals(i, task.getId());
+            assertEquals("Row " + i, task.getDescription());
+            assertEquals(i % 2 == 0 ? Status.IN_PROGRESS : Status.TODO, task.getStatus());
+        }
+        assertEquals(count + 1, repository.addTask("After the import"));
+    }
+
+    @Test
+    void importTasks_rejectsMalformedRecordAndImportsNothing() {
+        Path file = directory.resolve("tasks.json");
+        TaskRepository repository = new TaskRepository(new JsonTaskStore(file), ReloadPolicy.ON_CHANGE);
+        repository.addTask("Existing");
+        String ndjson = """
+                {"description":"First"}
+
+                {"description":"Second","status":"DONE"}
+                {"status":"TODO"}
+                """;
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> repository.importTasks(new BufferedReader(new StringReader(ndjson)), TaskTransfer.Format.NDJSON));
+
+        assertTrue(error.getMessage().startsWith("Line 4: missing description"), error.getMessage());
+        assertEquals(1, repository.listPage(null, 0, 10).size());
+        assertEquals(2, repository.addTask("Next"));
+    }
+
+}